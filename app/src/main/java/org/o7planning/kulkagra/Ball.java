@@ -1,79 +1,60 @@
 package org.o7planning.kulkagra;
 
-import android.graphics.Color;
-import android.graphics.RectF;
+import org.o7planning.kulkagra.engine.BallPhysics;
+import org.o7planning.kulkagra.engine.ColorFade;
+import org.o7planning.kulkagra.engine.ColorRamp;
 
 
 public class Ball {
     // Promień piłki
     public static float RADIUS  = 10.0f;
-    private int ballColor       = Color.GREEN;
 
-    // Maksymalna prędkość piłki
-    private static final float MAX_SPEED = 4.0f;
+    // Kolor piłki z pola magnetycznego (uT): gradient liczony raz, płynne przejście
+    private static final ColorRamp COLOR_RAMP = new ColorRamp(
+            new float[] {50, 150, 250, 350},
+            new int[] {0xFF66FF33, 0xFFFF0066, 0xFFFF66FF, 0xFF9900FF});
+    private static final long COLOR_FADE_NANOS = 250000000L;
+    private final ColorFade mColor = new ColorFade(COLOR_RAMP, COLOR_FADE_NANOS, 0);
 
-    // Zwolnienie piłki
-    private static final float COMPENSATOR = 8.0f;
+    // Fizyka piłki (moduł engine)
+    private final BallPhysics mPhysics;
 
-    // Wyrównanie "granic"
-    private static final float REBOUND = 1.75f;
-
-    // Rect do ustawienia piłki na pozycje początkową
-    private RectF mInitialRectangle = null;
-
-    // Rect kolizja
-    private RectF mRectangle = null;
-
-    // Koordynaty X i Y
-    private float mX;
-    private float mY;
-
-    // Predkość na osi
-    private float mSpeedX = 0;
-    private float mSpeedY = 0;
-
-    // Rozmiar obrazu
-    private int mWidth = -1;
-    private int mHeight = -1;
+    // Rozmiar ekranu i poziomu
+    private int mSurfaceWidth   = -1;
+    private int mSurfaceHeight  = -1;
+    private int mLevelWidth     = 0;
+    private int mLevelHeight    = 0;
 
     /**
-     * Setter of initial rectangle (start point)
+     * Set start position of the ball
      *
-     * @param pInitialRectangle Rectangle shape as starting point.
-     * @see RectF
+     * @param pX X position of the ball center.
+     * @param pY Y position of the ball center.
      */
-    public void setInitialRectangle(RectF pInitialRectangle) {
-        this.mInitialRectangle = pInitialRectangle;
-        this.mX = pInitialRectangle.left + RADIUS;
-        this.mY = pInitialRectangle.top + RADIUS;
+    public void setStart(float pX, float pY) {
+        mPhysics.setStart(pX, pY);
     }
 
     /**
-     * Get X position
+     * Set size of the level. The ball moves over the whole level,
+     * which may be larger than the screen.
      *
-     * @return Nothing.
+     * @param pWidth Width of the level.
+     * @param pHeight Height of the level.
      */
-    public float getX() {
-        return mX;
+    public void setLevelSize(int pWidth, int pHeight) {
+        this.mLevelWidth = pWidth;
+        this.mLevelHeight = pHeight;
+        updateBounds();
     }
 
     /**
-     * Set X position (start point)
+     * Get X position
      *
-     * @param pPosX X axis position.
+     * @return Nothing.
      */
-    private void setPosX(float pPosX) {
-        mX = pPosX;
-
-        // Jeśli piłka wyleci poza granice, zmień kierunek piłki
-        if(mX < RADIUS) {
-            mX = RADIUS;
-            // Zmień pozycje piłki, kiedy zmieni kierunek
-            mSpeedY = -mSpeedY / REBOUND;
-        } else if(mX > mWidth - RADIUS) {
-            mX = mWidth - RADIUS;
-            mSpeedY = -mSpeedY / REBOUND;
-        }
+    public float getX() {
+        return mPhysics.getX();
     }
 
     /**
@@ -82,23 +63,7 @@ public class Ball {
      * @return Nothing.
      */
     public float getY() {
-        return mY;
-    }
-
-    /**
-     * Set Y position (start point)
-     *
-     * @param pPosY Y axis position.
-     */
-    private void setPosY(float pPosY) {
-        mY = pPosY;
-        if(mY < RADIUS) {
-            mY = RADIUS;
-            mSpeedX = -mSpeedX / REBOUND;
-        } else if(mY > mHeight - RADIUS) {
-            mY = mHeight - RADIUS;
-            mSpeedX = -mSpeedX / REBOUND;
-        }
+        return mPhysics.getY();
     }
 
     /**
@@ -108,7 +73,8 @@ public class Ball {
      * @see Ball
      */
     public void setHeight(int pHeight) {
-        this.mHeight = pHeight;
+        this.mSurfaceHeight = pHeight;
+        updateBounds();
     }
 
     /**
@@ -118,7 +84,14 @@ public class Ball {
      * @see Ball
      */
     public void setWidth(int pWidth) {
-        this.mWidth = pWidth;
+        this.mSurfaceWidth = pWidth;
+        updateBounds();
+    }
+
+    // Piłka porusza się po ekranie albo po całym poziomie jeśli jest większy
+    private void updateBounds() {
+        mPhysics.setWidth(mSurfaceWidth < 0 ? -1 : Math.max(mSurfaceWidth, mLevelWidth));
+        mPhysics.setHeight(mSurfaceHeight < 0 ? -1 : Math.max(mSurfaceHeight, mLevelHeight));
     }
 
     /**
@@ -127,48 +100,22 @@ public class Ball {
      * @see Ball
      */
     public Ball() {
-        mRectangle = new RectF();
+        mPhysics = new BallPhysics(RADIUS);
     }
 
     /**
-     * Setting ball coordinate (X and Y).
+     * Get physics of the ball, moved by the game core
      *
-     * @param pX X axis.
-     * @param pY Y axis.
-     * @return New position as RectF.
-     * @see RectF
+     * @return Ball physics object.
+     * @see BallPhysics
      */
-    public RectF putXAndY(float pX, float pY) {
-        if(this.mWidth < 0 || this.mHeight < 0)
-            return null;
-
-        mSpeedX += pX / COMPENSATOR;
-        if(mSpeedX > MAX_SPEED)
-            mSpeedX = MAX_SPEED;
-        if(mSpeedX < -MAX_SPEED)
-            mSpeedX = -MAX_SPEED;
-
-        mSpeedY += pY / COMPENSATOR;
-        if(mSpeedY > MAX_SPEED)
-            mSpeedY = MAX_SPEED;
-        if(mSpeedY < -MAX_SPEED)
-            mSpeedY = -MAX_SPEED;
-
-        setPosX(mX + mSpeedY);
-        setPosY(mY + mSpeedX);
-
-        // Ustaw koordynaty miejsca kolizji
-        mRectangle.set(mX - RADIUS, mY - RADIUS, mX + RADIUS, mY + RADIUS);
-
-        return mRectangle;
+    public BallPhysics getPhysics() {
+        return mPhysics;
     }
 
     // Reset piłki do początkowej pozycji
     public void reset() {
-        mSpeedX = 0;
-        mSpeedY = 0;
-        this.mX = mInitialRectangle.left + RADIUS;
-        this.mY = mInitialRectangle.top + RADIUS;
+        mPhysics.reset();
     }
 
     /**
@@ -177,27 +124,27 @@ public class Ball {
      * @return Color value as integer.
      */
     public int getBallColor() {
-        return ballColor;
+        return mColor.getColor();
+    }
+
+    /**
+     * Move the color towards the last magnetic level. Called by the drawing thread on every frame.
+     *
+     * @param pNow Current time in nanoseconds (System.nanoTime).
+     * @return True if the color changed.
+     * @see ColorFade
+     */
+    public boolean updateBallColor(long pNow) {
+        return mColor.update(pNow);
     }
 
     /**
      * Change ball color according to magnetic field level.
+     * Only the index in the precomputed gradient is stored, the color fades in while drawing.
      *
      * @param magneticField Magnetic level captured by the device.
      */
     public void setBallColor(double magneticField) {
-
-        int color;
-        if(magneticField <= 100.0f) {
-            color = Color.parseColor("#66ff33");
-        } else if (magneticField > 100.0f && magneticField <= 200.0f) {
-            color = Color.parseColor("#ff0066");
-        } else if (magneticField > 200.0f && magneticField <= 300.0f) {
-            color = Color.parseColor("#ff66ff");
-        } else {
-            color = Color.parseColor("#9900ff");
-        }
-
-        this.ballColor = color;
+        mColor.setValue((float) magneticField);
     }
 }
@@ -8,6 +8,10 @@ public class Bloc {
     private Type mType = null;
     private RectF mRectangle = null;
 
+    // Pozycja bloku w siatce
+    private int mCellX;
+    private int mCellY;
+
     /**
      * Getter type of bloc
      *
@@ -28,6 +32,24 @@ public class Bloc {
         return mRectangle;
     }
 
+    /**
+     * Get column of the bloc in the level grid
+     *
+     * @return Column index of the bloc.
+     */
+    public int getCellX() {
+        return mCellX;
+    }
+
+    /**
+     * Get row of the bloc in the level grid
+     *
+     * @return Row index of the bloc.
+     */
+    public int getCellY() {
+        return mCellY;
+    }
+
     /**
      * Constructor of Bloc class
      *
@@ -38,6 +60,8 @@ public class Bloc {
      */
     public Bloc(Type pType, int pX, int pY) {
         this.mType = pType;
+        this.mCellX = pX;
+        this.mCellY = pY;
         float blocSize = Ball.RADIUS * 2;
         this.mRectangle = new RectF(pX * blocSize, pY * blocSize, (pX + 1) * blocSize, (pY + 1) * blocSize);
     }
@@ -1,17 +1,20 @@
 package org.o7planning.kulkagra;
 
 import android.app.AlertDialog;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
-import android.media.MediaPlayer;
 import androidx.appcompat.app.AppCompatActivity;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Process;
+import android.os.SystemClock;
 import android.os.PowerManager;
 import android.util.DisplayMetrics;
 import android.util.Log;
@@ -22,19 +25,56 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.TextView;
 
-import java.util.List;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.o7planning.kulkagra.GraphicGameEngine;
 import org.o7planning.kulkagra.PhysicalGameEngine;
 import org.o7planning.kulkagra.Ball;
 import org.o7planning.kulkagra.Bloc;
+import org.o7planning.kulkagra.engine.BestTimesStore;
+import org.o7planning.kulkagra.engine.MazeLevel;
+import org.o7planning.kulkagra.engine.PerfCounters;
+import org.o7planning.kulkagra.engine.ReplayRecorder;
+import org.o7planning.kulkagra.engine.Swarm;
 
 public class GameActivity extends AppCompatActivity implements SensorEventListener {
 
     // ID dialogów
     public static final int VICTORY_DIALOG  = 0;
     public static final int DEFEAT_DIALOG   = 1;
-    public static int LEVEL = 2;
+    public static final int START_LEVEL = 2;
+    public static int LEVEL = START_LEVEL;
+
+    // Tryb roju: liczba dodatkowych piłek (adb shell am start ... --ei swarm 5000)
+    public static final String EXTRA_SWARM = "swarm";
+    private static final long SWARM_SEED = 1L;
+
+    // Labirynt: liczba pokoi na boku (adb shell am start ... --ei maze 400)
+    public static final String EXTRA_MAZE = "maze";
+    private static final long MAZE_SEED = 1L;
+    private static final int MAZE_RESIDENT_CHUNKS = 2;
+
+    // Zrzut opóźnień do logcat (adb shell am broadcast -a org.o7planning.kulkagra.DUMP_LATENCY [--ez reset true])
+    public static final String ACTION_DUMP_LATENCY = "org.o7planning.kulkagra.DUMP_LATENCY";
+    private static final String TAG = "GameActivity";
+
+    // Nakładka wydajności (--ez hud true)
+    public static final String EXTRA_HUD = "hud";
+
+    // Nagrywanie (--ez record true) i odtwarzanie (--es replay replay-123.bin) powtórek
+    public static final String EXTRA_RECORD = "record";
+    public static final String EXTRA_REPLAY = "replay";
+    private static final String REPLAY_DIR = "replays";
+    private static final int REPLAY_BATCH_BYTES = 4096;
+    private static final int REPLAY_BATCHES = 4;
+
+    // Sterowanie wektorem obrotu zamiast akcelerometru (--ez rotation_vector true)
+    public static final String EXTRA_ROTATION_VECTOR = "rotation_vector";
 
     // Definicja wysokości obrazu
     private static final int SCREEN_HEIGHT_RATION = 143;
@@ -43,6 +83,7 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
     private PhysicalGameEngine mEngine  = null;
     private GraphicGameEngine mView     = null;
     private Ball mBall                  = null;
+    private LevelRepository mLevels     = null;
 
 
     // Sensory
@@ -51,7 +92,42 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
     private Sensor mMagneticSensor          = null;
 
     // Dzwięki
-    private MediaPlayer mediaPlayer;
+    private SoundEffects mSounds = null;
+
+    // Wątek przygotowujący następny poziom w tle
+    private ExecutorService mBackground = null;
+
+    // Najlepsze czasy
+    private static final String TIMES_FILE = "times.bin";
+    private BestTimesStore mTimes = null;
+
+    // Powtórki
+    private ReplayRecorder mRecorder = null;
+    private ReplayPlayer mReplayPlayer = null;
+
+    // Wstrzymywanie sensorów i rysowania poza grą
+    private GameLifecycle mLifecycle = null;
+
+    // Zdarzenia światła i pola magnetycznego łączone, kolory zmieniane najwyżej co 250 ms
+    private static final long AMBIENT_INTERVAL_MS = GameLifecycle.AMBIENT_PERIOD_US / 1000;
+    private final Handler mAmbientHandler = new Handler();
+    private float mPendingLuminosity = -1;
+    private double mPendingMagnetic = -1;
+    private long mLastAmbientUpdate = 0;
+    private boolean mAmbientScheduled = false;
+    private final Runnable mApplyAmbient = new Runnable() {
+        @Override
+        public void run() {
+            mAmbientScheduled = false;
+            applyAmbient();
+        }
+    };
+
+    // Liczniki nakładki wydajności, null gdy wyłączona
+    private PerfCounters mCounters = null;
+
+    // Odbiornik zrzutu opóźnień, tylko w wersji debug
+    private BroadcastReceiver mLatencyReceiver = null;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -63,9 +139,13 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
         mLuminositySensor   = mSensorManager.getDefaultSensor(Sensor.TYPE_LIGHT);
         mMagneticSensor     = mSensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
 
+        // Dekodowanie efektów dźwiękowych w tle, raz na start
+        mSounds = new SoundEffects(this);
+
         // Inizjalizacja graphic game engine
         mView   = new GraphicGameEngine(this);
         mEngine = new PhysicalGameEngine(this);
+        mEngine.setRotationVector(getIntent().getBooleanExtra(EXTRA_ROTATION_VECTOR, false));
         setContentView(mView);
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
 
@@ -81,11 +161,79 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
         mBall = new Ball();
         mView.setBall(mBall);
         mEngine.setBall(mBall);
+        mView.setWorld(mEngine.getWorld());
+        mLifecycle = new GameLifecycle(mSensorManager, this, mLuminositySensor, mMagneticSensor, mEngine, mView);
 
         // Tworzenie labiryntu
-        List<Bloc> mList1 = mEngine.buildLabyrinthe1();
-        mView.setBlocks(mList1);
+        mLevels = new LevelRepository(getResources());
+        mBackground = Executors.newSingleThreadExecutor();
+
+        // Najlepsze czasy i postęp gry, jeden odczyt pliku w tle
+        mTimes = new BestTimesStore(new File(getFilesDir(), TIMES_FILE), mBackground);
+        // Labirynt nie zależy od postępu, zwykły poziom dopiero po odczycie
+        final int mazeSize = Math.min(getIntent().getIntExtra(EXTRA_MAZE, 0), MazeLevel.MAX_SIZE);
+        if(mazeSize > 0)
+            mEngine.setLevel(levelFor(-mazeSize));
+
+        // Nagrywanie powtórki do pliku (files/replays)
+        final String replay = getIntent().getStringExtra(EXTRA_REPLAY);
+        if(replay == null && getIntent().getBooleanExtra(EXTRA_RECORD, false))
+            startRecording();
+
+        // Nakładka wydajności na testy gry
+        if(getIntent().getBooleanExtra(EXTRA_HUD, false)) {
+            mCounters = new PerfCounters();
+            mView.setPerfCounters(mCounters);
+            mEngine.setPerfCounters(mCounters);
+        }
+
+        // Tryb roju
+        int swarmSize = getIntent().getIntExtra(EXTRA_SWARM, 0);
+        if(swarmSize > 0) {
+            Swarm swarm = new Swarm(swarmSize, Ball.RADIUS, SWARM_SEED);
+            mEngine.setSwarm(swarm);
+            mView.setSwarm(swarm.getFrames());
+        }
+
+        if(BuildConfig.DEBUG) {
+            mLatencyReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context pContext, Intent pIntent) {
+                    Log.i(TAG, "Input latency: " + mView.getLatency());
+                    Log.i(TAG, "Tilt sampling period: " + mEngine.getSamplingPeriodUs() + " us");
+                    if(pIntent.getBooleanExtra("reset", false))
+                        mView.getLatency().reset();
+                }
+            };
+            registerReceiver(mLatencyReceiver, new IntentFilter(ACTION_DUMP_LATENCY));
+        }
+
+        // Start dopiero z wczytanym postępem, rekordy porównywane z zapisanymi
+        mBackground.execute(new Runnable() {
+            @Override
+            public void run() {
+                mTimes.load();
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(isFinishing() || isDestroyed())
+                            return;
+                        LEVEL = mTimes.getProgress(START_LEVEL);
+                        if(mazeSize <= 0)
+                            mEngine.setLevel(levelFor(Math.min(LEVEL - 1, mLevels.size() - 1)));
+                        showStartDialog(replay);
+                    }
+                });
+            }
+        });
+    }
 
+    /**
+     * Ask the player to start the game, or start the replay.
+     *
+     * @param pReplay Name of the replay file, null to play.
+     */
+    private void showStartDialog(final String pReplay) {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setCancelable(false)
                 .setMessage("Podołasz wyzwaniu?")
@@ -93,11 +241,22 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
                 .setNeutralButton("START", new DialogInterface.OnClickListener() {
                     @Override
                     public void onClick(DialogInterface dialog, int which) {
+                        // Powtórka zastępuje sensor
+                        if(pReplay != null) {
+                            mReplayPlayer = new ReplayPlayer(GameActivity.this, mEngine,
+                                    new File(new File(getFilesDir(), REPLAY_DIR), pReplay));
+                            mReplayPlayer.start();
+                            return;
+                        }
+
+                        // Sposób trzymania telefonu przy starcie to poziom
+                        mEngine.calibrate();
                         mEngine.reset();
                         mEngine.resume();
+                        prefetchNextLevel();
                     }
                 });
-        builder.show();
+        showDialog(builder);
     }
 
     @Override
@@ -107,11 +266,102 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
         // Wznowienie gry
        // mEngine.resume();
 
-        // Rejerstracja Listener'a
-        mSensorManager.registerListener(this, mLuminositySensor, SensorManager.SENSOR_DELAY_NORMAL);
-        mSensorManager.registerListener(this, mMagneticSensor, SensorManager.SENSOR_DELAY_NORMAL);
+        // Rejerstracja Listener'a, o ile żadne okno nie czeka na gracza
+        mLifecycle.onResume();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+
+        // Gra w tle nie potrzebuje sensorów ani rysowania
+        mLifecycle.onPause();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        // Zatrzymanie wątku symulacji
+        mAmbientHandler.removeCallbacks(mApplyAmbient);
+        mEngine.release();
+        mView.release();
+        mSounds.release();
+        if(mReplayPlayer != null)
+            mReplayPlayer.interrupt();
+        if(mRecorder != null) {
+            mEngine.setRecorder(null);
+            mRecorder.close();
+        }
+        // Zaległe zapisy powtórki kończą się przed zamknięciem wątku
+        mBackground.shutdown();
+
+        if(mLatencyReceiver != null) {
+            unregisterReceiver(mLatencyReceiver);
+            mLatencyReceiver = null;
+        }
     }
 
+    /**
+     * Get a level by its id.
+     *
+     * @param pId Number of the level file, or minus the number of rooms of a maze.
+     * @return The level.
+     * @see Level#getId()
+     */
+    public Level levelFor(int pId) {
+        if(pId >= 0)
+            return mLevels.get(pId);
+
+        // Korytarze szersze od piłki, fragmenty przed piłką generuje wątek w tle
+        MazeLevel maze = new MazeLevel(-pId, -pId, MAZE_SEED, Ball.RADIUS * 3, MAZE_RESIDENT_CHUNKS, mBackground);
+        return new Level(maze, pId);
+    }
+
+    /**
+     * Record every sample fed to the physics into a new replay file.
+     * Batches are written by the background executor.
+     */
+    private void startRecording() {
+        File dir = new File(getFilesDir(), REPLAY_DIR);
+        if(!dir.isDirectory() && !dir.mkdirs())
+            return;
+        try {
+            File file = new File(dir, "replay-" + System.currentTimeMillis() + ".bin");
+            mRecorder = new ReplayRecorder(new FileOutputStream(file, true), mBackground,
+                    REPLAY_BATCH_BYTES, REPLAY_BATCHES);
+            mEngine.setRecorder(mRecorder);
+            Log.i(TAG, "Recording replay to " + file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Build the next level and draw its layer in the background while the current one is played,
+     * so the victory dialog only swaps references.
+     */
+    private void prefetchNextLevel() {
+        final int next = LEVEL;
+        if(next >= mLevels.size())
+            return;
+
+        mBackground.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Wątek tła zapisuje też powtórki i rekordy, obniżony tylko na czas rysowania
+                int priority = Process.getThreadPriority(Process.myTid());
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    mView.prerenderLayer(mLevels.get(next));
+                } catch (IllegalStateException e) {
+                    e.printStackTrace();
+                } finally {
+                    Process.setThreadPriority(priority);
+                }
+            }
+        });
+    }
 
     public void showInfoDialog(int id) {
 
@@ -119,113 +369,113 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
         // Pokaż powiadomienie kiedy event zostanie uruchomiony
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
 
-        int soundToPlay = R.raw.walking;
+        final int effect;
+        // Powtórka nie zmienia rekordów ani postępu gracza
+        final boolean replayed = mEngine.isReplaying();
         mEngine.stop();
 
 
         switch(id) {
             case VICTORY_DIALOG:
-                if(LEVEL == 4) {
+                // Czas przejścia z czasu próbek sensora
+                Level played = mEngine.getLevel();
+                long run = mEngine.getLastRunNanos();
+                boolean best = !replayed && played != null && mTimes.submit(played.getId(), run);
+
+                // Koniec gry tylko na żywo, w powtórce LEVEL nie ma znaczenia
+                if(LEVEL == 4 && !replayed) {
+                    // Gra ukończona, następna zaczyna od początku
+                    mTimes.saveProgress(START_LEVEL);
+                    LEVEL = START_LEVEL;
                     builder.setCancelable(false)
                             .setMessage("Jesteś zwycięzcą!")
                             .setTitle("O to nagroda ;)");
-                    builder.show();
+                    showDialog(builder);
                     new Handler().postDelayed(new Runnable() {
                         @Override
                         public void run(){
+                            // Gracz mógł już wyjść z gry
+                            if(isFinishing())
+                                return;
                             Intent i = new Intent(GameActivity.this, FinishActivity.class);
                             startActivity(i);
-                            GameActivity.this.onDestroy();
+                            // Sprzątanie w onDestroy wywołanym przez system, tylko raz
+                            finish();
                         }
                     }, 6000);
                     return;
                 }
 
                 else{
-                    try {
-                        if (mediaPlayer.isPlaying()) {
-                            mediaPlayer.stop();
-                        }
-                        mediaPlayer.start();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                    soundToPlay = R.raw.win;
+                    effect = SoundEffects.WIN;
                     builder.setCancelable(false)
+                            .setTitle(String.format(Locale.US, "Czas: %.2f s%s", run / 1e9, best ? " (rekord!)" : ""))
                             .setMessage(R.string.victory_msg)
                             .setMessage(R.string.victory_title)
                             .setNeutralButton(R.string.next_round, new DialogInterface.OnClickListener() {
                                 @Override
                                 public void onClick(DialogInterface dialog, int which) {
-                                    mEngine.reset();
-                                    if (LEVEL == 2) {
-                                        List<Bloc> mList2 = mEngine.buildLabyrinthe2();
-                                        mView.setBlocks(mList2);
-                                    } else if (LEVEL == 3) {
-                                        List<Bloc> mList3 = mEngine.buildLabyrinthe3();
-                                        mView.setBlocks(mList3);
+                                    mSounds.play(effect);
+                                    // Następną rundę zaczyna nagranie
+                                    if(replayed) {
+                                        mEngine.releaseReplay();
+                                        return;
                                     }
+                                    mEngine.reset();
+                                    Level level = mLevels.get(LEVEL);
+                                    mEngine.setLevel(level);
 
                                     LEVEL++;
+                                    mTimes.saveProgress(LEVEL);
                                     mEngine.resume();
-                                    try {
-                                        if (mediaPlayer.isPlaying()) {
-                                            mediaPlayer.stop();
-                                        }
-                                        mediaPlayer.start();
-                                    } catch (Exception e) {
-                                        e.printStackTrace();
-                                    }
+                                    prefetchNextLevel();
                                 }
                             });
                 }
                 break;
             case DEFEAT_DIALOG:
-                try {
-                    if (mediaPlayer.isPlaying()) {
-                        mediaPlayer.stop();
-                    }
-                    mediaPlayer.start();
-                } catch(Exception e) { e.printStackTrace(); }
-                soundToPlay = R.raw.loose;
+                effect = SoundEffects.LOOSE;
                 builder.setCancelable(false)
                         .setMessage(R.string.defeat_msg)
                         .setTitle(R.string.defeat_title)
                         .setNeutralButton(R.string.restart_game, new DialogInterface.OnClickListener() {
                             @Override
                             public void onClick(DialogInterface dialog, int which) {
+                                mSounds.play(effect);
+                                if(replayed) {
+                                    mEngine.releaseReplay();
+                                    return;
+                                }
                                 mEngine.reset();
                                 mEngine.resume();
-                                try {
-                                    if (mediaPlayer.isPlaying()) {
-                                        mediaPlayer.stop();
-                                    }
-                                    mediaPlayer.start();
-                                } catch(Exception e) { e.printStackTrace(); }
                             }
                         });
                 break;
             default:
-                soundToPlay = R.raw.loose;
+                effect = SoundEffects.LOOSE;
                 break;
         }
-        builder.show();
-        mediaPlayer = MediaPlayer.create(this, soundToPlay);
+        showDialog(builder);
 
-        // Ustaw obsługe odtwarzacza
-        mediaPlayer.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
-            public void onCompletion(MediaPlayer mp) {
-                mediaPlayer.release();
-            }
-        });
+        // Efekt jest już zdekodowany, odtwarzanie nie blokuje wątku UI
+        mSounds.play(effect);
+    }
 
-        // Pauza jeśli już działa lub start jeśli nie
-        try {
-            if (mediaPlayer.isPlaying()) {
-                mediaPlayer.stop();
+    /**
+     * Show a dialog over the game, sensors and drawing wait until it is dismissed.
+     *
+     * @param pBuilder Builder of the dialog.
+     * @see GameLifecycle
+     */
+    private void showDialog(AlertDialog.Builder pBuilder) {
+        pBuilder.setOnDismissListener(new DialogInterface.OnDismissListener() {
+            @Override
+            public void onDismiss(DialogInterface pDialog) {
+                mLifecycle.onDialogDismissed();
             }
-            mediaPlayer.start();
-        } catch(Exception e) { e.printStackTrace(); }
+        });
+        mLifecycle.onDialogShown();
+        pBuilder.show();
     }
 
     @Override
@@ -233,29 +483,51 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
 
         switch (sensorEvent.sensor.getType()) {
             case Sensor.TYPE_LIGHT:
-                float mLuminosity = sensorEvent.values[0];
-                mView.setSurfaceBgColor(mLuminosity);
+                mPendingLuminosity = sensorEvent.values[0];
                 break;
             case Sensor.TYPE_MAGNETIC_FIELD:
                 float xMagnetic = sensorEvent.values[0];
                 float yMagnetic = sensorEvent.values[1];
                 float zMagnetic = sensorEvent.values[2];
-                double mMagnetic = Math.sqrt((double) (xMagnetic * xMagnetic + yMagnetic * yMagnetic + zMagnetic * zMagnetic));
-                mBall.setBallColor(mMagnetic);
+                mPendingMagnetic = Math.sqrt((double) (xMagnetic * xMagnetic + yMagnetic * yMagnetic + zMagnetic * zMagnetic));
                 break;
             default:
-                break;
+                return;
+        }
+        if(mCounters != null)
+            mCounters.onAmbientEvent();
+
+        // Najnowsza wartość czeka na koniec przerwy, wcześniejsze przepadają
+        if(mAmbientScheduled)
+            return;
+        long wait = mLastAmbientUpdate + AMBIENT_INTERVAL_MS - SystemClock.uptimeMillis();
+        if(wait <= 0) {
+            applyAmbient();
+        } else {
+            mAmbientScheduled = true;
+            mAmbientHandler.postDelayed(mApplyAmbient, wait);
+        }
+    }
+
+    // Zmień kolory z ostatnich wartości sensorów otoczenia
+    private void applyAmbient() {
+        mLastAmbientUpdate = SystemClock.uptimeMillis();
+        if(mPendingLuminosity >= 0) {
+            mView.setSurfaceBgColor(mPendingLuminosity);
+            mPendingLuminosity = -1;
+        }
+        if(mPendingMagnetic >= 0) {
+            mBall.setBallColor(mPendingMagnetic);
+            mPendingMagnetic = -1;
         }
+        if(mCounters != null)
+            mCounters.onAmbientUpdate();
     }
 
     @Override
     public void onAccuracyChanged(Sensor sensor, int i) {
 
     }
-
-    private double getCurrentTimestamp() {
-        return System.currentTimeMillis() / 1000;
-    }
 }
 
 
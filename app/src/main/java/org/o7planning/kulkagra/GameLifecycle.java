@@ -0,0 +1,113 @@
+package org.o7planning.kulkagra;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+
+/**
+ * Keeps sensors and drawing running only while the game can be played.
+ * When the activity is paused or a dialog waits for the player, the light and magnetic
+ * listeners are detached, the simulation is suspended and the drawing thread is parked.
+ * All of them come back as soon as the game is visible again. Used from the UI thread.
+ *
+ * @see PhysicalGameEngine#setSuspended(boolean)
+ * @see GraphicGameEngine#setRenderingPaused(boolean)
+ */
+public class GameLifecycle {
+
+    // Światło i pole magnetyczne zmieniają tylko kolory, kilka razy na sekundę wystarczy
+    public static final int AMBIENT_PERIOD_US           = 250000;
+    private static final int AMBIENT_REPORT_LATENCY_US  = 500000;
+
+    private final SensorManager mManager;
+    private final SensorEventListener mListener;
+    private final Sensor mLuminositySensor;
+    private final Sensor mMagneticSensor;
+    private final PhysicalGameEngine mEngine;
+    private final GraphicGameEngine mView;
+
+    // Aktywność na pierwszym planie
+    private boolean mForeground = false;
+
+    // Liczba otwartych okien dialogowych
+    private int mDialogs = 0;
+
+    // Czy sensory i rysowanie są teraz włączone
+    private boolean mActive = true;
+
+    /**
+     * Constructor of GameLifecycle class
+     *
+     * @param pManager Sensor manager of the activity.
+     * @param pListener Listener of the light and magnetic sensors.
+     * @param pLuminositySensor Light sensor.
+     * @param pMagneticSensor Magnetic field sensor.
+     * @param pEngine Physics of the game.
+     * @param pView Drawing of the game.
+     */
+    public GameLifecycle(SensorManager pManager, SensorEventListener pListener,
+                         Sensor pLuminositySensor, Sensor pMagneticSensor,
+                         PhysicalGameEngine pEngine, GraphicGameEngine pView) {
+        this.mManager = pManager;
+        this.mListener = pListener;
+        this.mLuminositySensor = pLuminositySensor;
+        this.mMagneticSensor = pMagneticSensor;
+        this.mEngine = pEngine;
+        this.mView = pView;
+        // Do pierwszego onResume gra czeka
+        update();
+    }
+
+    /**
+     * The activity is in the foreground.
+     */
+    public void onResume() {
+        mForeground = true;
+        update();
+    }
+
+    /**
+     * The activity left the foreground.
+     */
+    public void onPause() {
+        mForeground = false;
+        update();
+    }
+
+    /**
+     * A dialog is shown over the game.
+     */
+    public void onDialogShown() {
+        mDialogs++;
+        update();
+    }
+
+    /**
+     * A dialog shown over the game has been dismissed.
+     */
+    public void onDialogDismissed() {
+        if(mDialogs > 0)
+            mDialogs--;
+        update();
+    }
+
+    // Włącz albo wyłącz wszystko naraz
+    private void update() {
+        boolean active = mForeground && mDialogs == 0;
+        if(active == mActive)
+            return;
+        mActive = active;
+
+        if(active) {
+            // Rysowanie pierwsze, obraz wraca od razu
+            mView.setRenderingPaused(false);
+            mEngine.setSuspended(false);
+            mManager.registerListener(mListener, mLuminositySensor, AMBIENT_PERIOD_US, AMBIENT_REPORT_LATENCY_US);
+            mManager.registerListener(mListener, mMagneticSensor, AMBIENT_PERIOD_US, AMBIENT_REPORT_LATENCY_US);
+        } else {
+            mManager.unregisterListener(mListener);
+            mEngine.setSuspended(true);
+            mView.setRenderingPaused(true);
+        }
+    }
+}
@@ -1,17 +1,34 @@
 package org.o7planning.kulkagra;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
-import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.o7planning.kulkagra.Ball;
 import org.o7planning.kulkagra.Bloc;
+import org.o7planning.kulkagra.engine.BlocStore;
+import org.o7planning.kulkagra.engine.CollisionMap;
+import org.o7planning.kulkagra.engine.ColorFade;
+import org.o7planning.kulkagra.engine.ColorRamp;
+import org.o7planning.kulkagra.engine.LatencyHistogram;
+import org.o7planning.kulkagra.engine.PerfCounters;
+import org.o7planning.kulkagra.engine.Swarm;
+import org.o7planning.kulkagra.engine.TripleBuffer;
 
 
 
@@ -30,8 +47,55 @@ public class GraphicGameEngine extends SurfaceView implements SurfaceHolder.Call
     private final Paint mPaint;
 
     private Ball mBall;
-    private int surfaceBgColor = Color.CYAN;
-    private List<Bloc> mBlocks = null;
+
+    // Kolor tła z natężenia światła (lx): szary, niebieski, błękitny, żółty
+    private static final ColorRamp BACKGROUND_RAMP = new ColorRamp(
+            new float[] {50, 150, 245, 340},
+            new int[] {Color.GRAY, Color.BLUE, Color.CYAN, Color.YELLOW});
+    private static final long COLOR_FADE_NANOS = 250000000L;
+    private final ColorFade mBackgroundColor = new ColorFade(BACKGROUND_RAMP, COLOR_FADE_NANOS, 245);
+
+    // Stan gry publikowany przez fizykę
+    private volatile TripleBuffer<WorldState> mWorld = null;
+
+    // Pozycje roju piłek, rysowane jednym wywołaniem
+    private volatile TripleBuffer<Swarm.Frame> mSwarmFrames = null;
+    private final Paint mSwarmPaint;
+
+    // Warstwa z narysowanym poziomem, tworzona raz na poziom
+    private Bitmap mLevelLayer = null;
+    private Level mLayerLevel = null;
+    private volatile boolean mSurfaceResized = true;
+    private volatile int mSurfaceWidth = 0;
+    private volatile int mSurfaceHeight = 0;
+
+    // Warstwa następnego poziomu narysowana w tle
+    private final AtomicReference<PreparedLayer> mPrepared = new AtomicReference<>();
+
+    private static class PreparedLayer {
+        final Level mLevel;
+        final Bitmap mBitmap;
+
+        PreparedLayer(Level pLevel, Bitmap pBitmap) {
+            this.mLevel = pLevel;
+            this.mBitmap = pBitmap;
+        }
+    }
+
+    // Cały obraz do przerysowania (nowy poziom, nowe tło, nowa powierzchnia)
+    private volatile boolean mFullRedraw = true;
+
+    // Opóźnienie od próbki sensora do wysłania klatki, kubełki po 1 ms do 250 ms
+    private final LatencyHistogram mLatency = new LatencyHistogram(250);
+
+    // Nakładka z licznikami wydajności, null gdy wyłączona
+    private volatile PerfCounters mCounters = null;
+    private volatile PerfHud mHud = null;
+
+    // Kamera: lewy górny róg widocznej części poziomu, używana tylko w wątku rysowania
+    private float mCameraX = 0;
+    private float mCameraY = 0;
+    private final RectF mCellRect = new RectF();
 
     /**
      * Constructor of GraphicGameEngine class.
@@ -44,10 +108,15 @@ public class GraphicGameEngine extends SurfaceView implements SurfaceHolder.Call
         mSurfaceHolder = getHolder();
         mSurfaceHolder.addCallback(this);
         mThread = new DrawingThread();
+        mThread.startLoop();
 
         mPaint = new Paint();
         mPaint.setStyle(Paint.Style.FILL);
 
+        mSwarmPaint = new Paint();
+        mSwarmPaint.setStrokeCap(Paint.Cap.ROUND);
+        mSwarmPaint.setColor(Color.MAGENTA);
+
      //   mBall = new Ball();
     }
 
@@ -63,30 +132,187 @@ public class GraphicGameEngine extends SurfaceView implements SurfaceHolder.Call
         super.draw(pCanvas);
 
         // Rysuj tło
-        pCanvas.drawColor(this.surfaceBgColor);
-        if(mBlocks != null) {
-            // Rysuj bloki
-            for(Bloc b : mBlocks) {
-                switch(b.getType()) {
-                    case START:
-                        mPaint.setColor(Color.WHITE);
-                        break;
-                    case END:
-                        mPaint.setColor(Color.RED);
-                        break;
-                    case HOLE:
-                        mPaint.setColor(Color.BLACK);
-                        break;
-                }
-                pCanvas.drawRect(b.getRectangle(), mPaint);
-            }
+        pCanvas.drawColor(mBackgroundColor.getColor());
+
+        TripleBuffer<WorldState> world = mWorld;
+        Level level = world != null ? world.getFront().getLevel() : null;
+
+        // Dalej rysujemy we współrzędnych poziomu
+        pCanvas.save();
+        pCanvas.translate(-mCameraX, -mCameraY);
+
+        // Rysuj bloki z gotowej warstwy, a gdy poziom nie mieści się na ekranie tylko widoczne komórki
+        if(mLevelLayer != null) {
+            pCanvas.drawBitmap(mLevelLayer, 0, 0, null);
+        } else if(level != null) {
+            float size = level.getMap().getCellSize();
+            drawCells(pCanvas, level,
+                    (int) Math.floor(mCameraX / size), (int) Math.floor((mCameraX + mSurfaceWidth) / size),
+                    (int) Math.floor(mCameraY / size), (int) Math.floor((mCameraY + mSurfaceHeight) / size),
+                    mPaint, mCellRect);
+        }
+
+        // Rysuj rój
+        TripleBuffer<Swarm.Frame> swarm = mSwarmFrames;
+        if(swarm != null) {
+            Swarm.Frame frame = swarm.getFront();
+            pCanvas.drawPoints(frame.getPoints(), 0, frame.getCount() * 2, mSwarmPaint);
         }
 
         // Rysuj piłkę
-        if(mBall != null) {
+        if(mBall != null && level != null) {
+            WorldState state = world.getFront();
             mPaint.setColor(mBall.getBallColor());
-            pCanvas.drawCircle(mBall.getX(), mBall.getY(), Ball.RADIUS, mPaint);
+            pCanvas.drawCircle(state.getBallX(), state.getBallY(), Ball.RADIUS, mPaint);
+        }
+        pCanvas.restore();
+
+        // Nakładka we współrzędnych ekranu
+        PerfHud hud = mHud;
+        if(hud != null)
+            hud.draw(pCanvas);
+    }
+
+    /**
+     * Draw the cells of a part of the level.
+     * Cells of the same type next to each other in a row are drawn as one rectangle.
+     *
+     * @param pCanvas Canvas to draw, in level coordinates.
+     * @param pLevel Level to draw.
+     * @param pFirstColumn First column to draw.
+     * @param pLastColumn Last column to draw.
+     * @param pFirstRow First row to draw.
+     * @param pLastRow Last row to draw.
+     * @param pPaint Paint used for the cells.
+     * @param pRect Rectangle reused for the cells.
+     * @see CollisionMap
+     */
+    private static void drawCells(Canvas pCanvas, Level pLevel, int pFirstColumn, int pLastColumn,
+                                  int pFirstRow, int pLastRow, Paint pPaint, RectF pRect) {
+        CollisionMap map = pLevel.getMap();
+        float size = map.getCellSize();
+        int firstColumn = Math.max(0, pFirstColumn);
+        int lastColumn = Math.min(map.getColumns() - 1, pLastColumn);
+        int firstRow = Math.max(0, pFirstRow);
+        int lastRow = Math.min(map.getRows() - 1, pLastRow);
+
+        for(int row = firstRow; row <= lastRow; row++) {
+            int runStart = firstColumn;
+            int runType = map.typeAt(firstColumn, row);
+            for(int column = firstColumn + 1; column <= lastColumn + 1; column++) {
+                int type = column <= lastColumn ? map.typeAt(column, row) : CollisionMap.NONE;
+                if(type == runType)
+                    continue;
+                if(runType != CollisionMap.NONE) {
+                    pPaint.setColor(runType == BlocStore.TYPE_END ? Color.RED : Color.BLACK);
+                    pRect.set(runStart * size, row * size, column * size, (row + 1) * size);
+                    pCanvas.drawRect(pRect, pPaint);
+                }
+                runStart = column;
+                runType = type;
+            }
+        }
+
+        // Start nie jest przeszkodą, nie ma go w mapie kolizji
+        int startColumn = pLevel.getStartColumn();
+        int startRow = pLevel.getStartRow();
+        if(startColumn >= firstColumn && startColumn <= lastColumn && startRow >= firstRow && startRow <= lastRow) {
+            pPaint.setColor(Color.WHITE);
+            pRect.set(startColumn * size, startRow * size, (startColumn + 1) * size, (startRow + 1) * size);
+            pCanvas.drawRect(pRect, pPaint);
+        }
+    }
+
+    /**
+     * Draw all cells of the level into the off-screen layer.
+     * Called from the drawing thread, only when the level or the surface size changed.
+     * A level larger than the screen has no layer, its visible cells are drawn on every frame.
+     *
+     * @param pLevel Level to draw, may be null.
+     */
+    private void renderLevelLayer(Level pLevel) {
+        mSurfaceResized = false;
+        mLayerLevel = pLevel;
+        int width = mSurfaceWidth;
+        int height = mSurfaceHeight;
+        if(width <= 0 || height <= 0)
+            return;
+
+        if(pLevel != null && !fits(pLevel, width, height)) {
+            if(mLevelLayer != null) {
+                mLevelLayer.recycle();
+                mLevelLayer = null;
+            }
+            return;
+        }
+
+        // Warstwa przygotowana w tle, wystarczy ją podmienić
+        PreparedLayer prepared = mPrepared.get();
+        if(prepared != null && prepared.mLevel == pLevel
+                && prepared.mBitmap.getWidth() == width && prepared.mBitmap.getHeight() == height
+                && mPrepared.compareAndSet(prepared, null)) {
+            if(mLevelLayer != null)
+                mLevelLayer.recycle();
+            mLevelLayer = prepared.mBitmap;
+            return;
+        }
+
+        if(mLevelLayer == null || mLevelLayer.getWidth() != width || mLevelLayer.getHeight() != height) {
+            if(mLevelLayer != null)
+                mLevelLayer.recycle();
+            mLevelLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
         }
+        mLevelLayer.eraseColor(Color.TRANSPARENT);
+        if(pLevel == null)
+            return;
+
+        Canvas canvas = new Canvas(mLevelLayer);
+        drawCells(canvas, pLevel, 0, Integer.MAX_VALUE - 1, 0, Integer.MAX_VALUE - 1, mPaint, mCellRect);
+    }
+
+    /**
+     * Draw the layer of a level before it is played.
+     * Called from a background thread while the current level is played,
+     * the drawing thread then only swaps the layer in.
+     * Nothing is prepared for a level larger than the screen or before the surface size is known.
+     *
+     * @param pLevel Level to prepare.
+     */
+    public void prerenderLayer(Level pLevel) {
+        int width = mSurfaceWidth;
+        int height = mSurfaceHeight;
+        if(pLevel == null || width <= 0 || height <= 0 || !fits(pLevel, width, height))
+            return;
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        drawCells(new Canvas(bitmap), pLevel, 0, Integer.MAX_VALUE - 1, 0, Integer.MAX_VALUE - 1,
+                new Paint(), new RectF());
+
+        // Nieużyta wcześniejsza warstwa należy już tylko do nas
+        PreparedLayer old = mPrepared.getAndSet(new PreparedLayer(pLevel, bitmap));
+        if(old != null)
+            old.mBitmap.recycle();
+    }
+
+    // Czy cały poziom mieści się na ekranie
+    private static boolean fits(Level pLevel, int pWidth, int pHeight) {
+        return pLevel.getWidth() <= pWidth && pLevel.getHeight() <= pHeight;
+    }
+
+    /**
+     * Position of the camera on one axis: the ball in the middle of the screen,
+     * but never showing anything outside of the level.
+     *
+     * @param pBall Position of the ball.
+     * @param pLevelSize Size of the level.
+     * @param pScreenSize Size of the screen.
+     * @return Position of the left (or top) side of the screen in the level.
+     */
+    private static float cameraOf(float pBall, int pLevelSize, int pScreenSize) {
+        if(pLevelSize <= pScreenSize)
+            return 0;
+        float camera = Math.round(pBall - pScreenSize / 2f);
+        return Math.max(0, Math.min(pLevelSize - pScreenSize, camera));
     }
 
     /**
@@ -99,7 +325,16 @@ public class GraphicGameEngine extends SurfaceView implements SurfaceHolder.Call
      * @see SurfaceHolder
      */
     @Override
-    public void surfaceChanged(SurfaceHolder pHolder, int pFormat, int pWidth, int pHeight) { }
+    public void surfaceChanged(SurfaceHolder pHolder, int pFormat, int pWidth, int pHeight) {
+        if(pWidth != mSurfaceWidth || pHeight != mSurfaceHeight) {
+            mSurfaceWidth = pWidth;
+            mSurfaceHeight = pHeight;
+            mSurfaceResized = true;
+        }
+        mFullRedraw = true;
+        // Nowy rozmiar widać od razu, także pod oknem dialogowym
+        mThread.requestFrame();
+    }
 
     /**
      * Event triggered when a new surface is created.
@@ -109,8 +344,9 @@ public class GraphicGameEngine extends SurfaceView implements SurfaceHolder.Call
      */
     @Override
     public void surfaceCreated(SurfaceHolder pHolder) {
-        mThread.keepDrawing = true;
-        mThread.start();
+        mFullRedraw = true;
+        // Wątek rysowania żyje dłużej niż powierzchnia, dostaje tylko sygnał
+        mThread.attachSurface();
         // Create ball using screen coordinates
         // Stwórz piłkę według koordynatów wyświetlacza
         if(mBall != null ) {
@@ -127,49 +363,331 @@ public class GraphicGameEngine extends SurfaceView implements SurfaceHolder.Call
      */
     @Override
     public void surfaceDestroyed(SurfaceHolder pHolder) {
-        mThread.keepDrawing = false;
+        // Po powrocie z tej metody powierzchni nie wolno już dotykać
+        CountDownLatch detached = mThread.detachSurface();
         boolean retry = true;
         while (retry) {
             try {
-                mThread.join();
+                detached.await();
                 retry = false;
             } catch (InterruptedException e) {
                 Log.d(TAG, "Error when destroying surface");
             }
         }
 
+        Log.d(TAG, "Frames drawn: " + mThread.framesDrawn + ", skipped: " + mThread.framesSkipped);
+        Log.d(TAG, "Input latency: " + mLatency);
     }
 
     /**
      * Thread used to launch draw process.
+     * Frames are paced by Choreographer (vsync) and only the area around
+     * the old and new ball position is repainted. When nothing moved
+     * the frame is skipped.
+     * The thread is started once with the view and lives until release(),
+     * surface recreation and pauses only stop asking for frames.
      */
-    private class DrawingThread extends Thread {
-        boolean keepDrawing = true;
+    private class DrawingThread extends HandlerThread implements Choreographer.FrameCallback {
+
+        // Wstrzymanie rysowania, wątek czeka w pętli bez wywołań vsync
+        volatile boolean paused = false;
+
+        // Liczniki klatek
+        volatile long framesDrawn = 0;
+        volatile long framesSkipped = 0;
+
+        private Handler mHandler;
+        private Choreographer mChoreographer;
+
+        // Stan pętli, używany tylko w wątku rysowania
+        private boolean mHasSurface = false;
+        private boolean mScheduled = false;
+
+        // Jedna klatka narysowana mimo wstrzymania (poziom za oknem dialogowym)
+        private boolean mFramePending = false;
+
+        // Zadania wątku rysowania, tworzone raz
+        private final Runnable mAttach = new Runnable() {
+            @Override
+            public void run() {
+                if(mCounters != null)
+                    startAllocationCounting();
+                mHasSurface = true;
+                mFullRedraw = true;
+                mFramePending = true;
+                schedule();
+            }
+        };
+        private final Runnable mWake = new Runnable() {
+            @Override
+            public void run() {
+                mFullRedraw = true;
+                mFramePending = true;
+                schedule();
+            }
+        };
+
+        // Obszar do przerysowania
+        private final Rect mDirty = new Rect();
+        private final Rect mBallRect = new Rect();
+
+        // Ostatnio narysowana piłka
+        private float mLastX = -1;
+        private float mLastY = -1;
+        private int mLastColor;
+        private long mLastSampleTimestamp = 0;
+
+        DrawingThread() {
+            super("Drawing");
+        }
+
+        /**
+         * Start the thread and wait for its loop.
+         */
+        void startLoop() {
+            start();
+            mHandler = new Handler(getLooper());
+        }
 
         /**
-         * When the thread is started, run this method.
+         * Called on the drawing thread before the loop starts.
          *
-         * @see SurfaceHolder
+         * @see Choreographer
          */
         @Override
-        public void run() {
-            Canvas canvas;
-            while (keepDrawing) {
-                canvas = null;
-
-                try {
-                    canvas = mSurfaceHolder.lockCanvas();
-                    synchronized (mSurfaceHolder) {
-                        draw(canvas);
+        protected void onLooperPrepared() {
+            mChoreographer = Choreographer.getInstance();
+        }
+
+        /**
+         * A new surface can be drawn, start asking for frames.
+         */
+        void attachSurface() {
+            mHandler.post(mAttach);
+        }
+
+        /**
+         * The surface is going away, stop drawing on it.
+         *
+         * @return Latch released once the drawing thread no longer touches the surface.
+         */
+        CountDownLatch detachSurface() {
+            final CountDownLatch detached = new CountDownLatch(1);
+            boolean posted = mHandler.postAtFrontOfQueue(new Runnable() {
+                @Override
+                public void run() {
+                    mHasSurface = false;
+                    if(mScheduled) {
+                        mScheduled = false;
+                        mChoreographer.removeFrameCallback(DrawingThread.this);
                     }
-                } finally {
-                    if (canvas != null)
-                        mSurfaceHolder.unlockCanvasAndPost(canvas);
+                    detached.countDown();
+                }
+            });
+            // Pętla już zakończona, nic nie rysuje
+            if(!posted)
+                detached.countDown();
+            return detached;
+        }
+
+        /**
+         * Park or wake up the frame loop.
+         * The whole screen is drawn once more in both cases.
+         *
+         * @param pPaused True to stop asking for frames.
+         */
+        void setPaused(boolean pPaused) {
+            paused = pPaused;
+            requestFrame();
+        }
+
+        /**
+         * Draw the whole screen once, even when the loop is parked.
+         */
+        void requestFrame() {
+            mHandler.post(mWake);
+        }
+
+        // Poproś o klatkę, jeśli jest powierzchnia i rysowanie nie jest wstrzymane
+        private void schedule() {
+            if(mScheduled || !mHasSurface || (paused && !mFramePending))
+                return;
+            mScheduled = true;
+            mChoreographer.postFrameCallback(this);
+        }
+
+        /**
+         * Called on every vsync.
+         *
+         * @param pFrameTimeNanos Time of the frame.
+         */
+        @Override
+        public void doFrame(long pFrameTimeNanos) {
+            mScheduled = false;
+            if(!mHasSurface)
+                return;
+
+            mFramePending = false;
+            drawFrame();
+            // Po wstrzymaniu ostatnia klatka jest narysowana, kolejnej nie ma o co prosić
+            schedule();
+        }
+
+        // Narysuj klatkę jeśli coś się zmieniło
+        private void drawFrame() {
+            TripleBuffer<WorldState> world = mWorld;
+            if(world == null)
+                return;
+
+            PerfCounters counters = mCounters;
+            long frameStart = System.nanoTime();
+            int allocationsStart = counters != null ? threadAllocations() : 0;
+
+            // Weź najnowszy stan bez blokowania fizyki
+            world.update();
+            WorldState state = world.getFront();
+
+            Rect dirty = null;
+            float x = state.getBallX();
+            float y = state.getBallY();
+            long sampleTimestamp = state.getSampleTimestamp();
+
+            // Kolory z sensorów przechodzą płynnie, tło zmienia cały obraz
+            if(mBackgroundColor.update(frameStart))
+                mFullRedraw = true;
+            if(mBall != null)
+                mBall.updateBallColor(frameStart);
+            int color = mBall != null ? mBall.getBallColor() : 0;
+
+            Level level = state.getLevel();
+            if(mSurfaceResized || level != mLayerLevel) {
+                renderLevelLayer(level);
+                mFullRedraw = true;
+            }
+
+            // Kamera podąża za piłką, przesunięcie obrazu wymaga całej klatki
+            float cameraX = level != null ? cameraOf(x, level.getWidth(), mSurfaceWidth) : 0;
+            float cameraY = level != null ? cameraOf(y, level.getHeight(), mSurfaceHeight) : 0;
+            if(cameraX != mCameraX || cameraY != mCameraY) {
+                mCameraX = cameraX;
+                mCameraY = cameraY;
+                mFullRedraw = true;
+            }
+
+            // Rój zajmuje cały ekran
+            TripleBuffer<Swarm.Frame> swarm = mSwarmFrames;
+            if(swarm != null && swarm.update())
+                mFullRedraw = true;
+
+            // Nowy tekst nakładki
+            PerfHud hud = mHud;
+            if(hud != null && hud.update(frameStart))
+                mFullRedraw = true;
+
+            if(mFullRedraw) {
+                mFullRedraw = false;
+            } else if(x == mLastX && y == mLastY && color == mLastColor) {
+                framesSkipped++;
+                return;
+            } else {
+                // Stara i nowa pozycja piłki
+                dirty = mDirty;
+                setBallBounds(dirty, mLastX, mLastY);
+                setBallBounds(mBallRect, x, y);
+                dirty.union(mBallRect);
+            }
+
+            Canvas canvas = null;
+            try {
+                canvas = dirty == null ? mSurfaceHolder.lockCanvas() : mSurfaceHolder.lockCanvas(dirty);
+                if(canvas == null) {
+                    mFullRedraw = true;
+                    return;
                 }
+                draw(canvas);
+            } finally {
+                if (canvas != null)
+                    mSurfaceHolder.unlockCanvasAndPost(canvas);
             }
+
+            // Każdą próbkę liczymy raz, w pierwszej klatce która ją pokazała
+            if(sampleTimestamp != 0 && sampleTimestamp != mLastSampleTimestamp) {
+                mLatency.record(SystemClock.elapsedRealtimeNanos() - sampleTimestamp);
+                mLastSampleTimestamp = sampleTimestamp;
+            }
+
+            if(counters != null)
+                counters.onFrame(System.nanoTime() - frameStart, threadAllocations() - allocationsStart);
+
+            framesDrawn++;
+            mLastX = x;
+            mLastY = y;
+            mLastColor = color;
+        }
+
+        // Prostokąt wokół piłki na ekranie
+        private void setBallBounds(Rect pRect, float pX, float pY) {
+            float x = pX - mCameraX;
+            float y = pY - mCameraY;
+            pRect.set((int) Math.floor(x - Ball.RADIUS) - 1, (int) Math.floor(y - Ball.RADIUS) - 1,
+                    (int) Math.ceil(x + Ball.RADIUS) + 1, (int) Math.ceil(y + Ball.RADIUS) + 1);
         }
     }
 
+    /**
+     * Get latencies from the sensor sample to the frame showing it
+     *
+     * @return Histogram of the latencies.
+     * @see LatencyHistogram
+     */
+    public LatencyHistogram getLatency() {
+        return mLatency;
+    }
+
+    // Debug.*AllocCounting są przestarzałe, ale nie ma innego licznika alokacji wątku.
+    // Używane tylko w wersji debug przy włączonej nakładce, w wersji release licznik stoi na 0.
+    @SuppressWarnings("deprecation")
+    private static void startAllocationCounting() {
+        if(BuildConfig.DEBUG)
+            Debug.startAllocCounting();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int threadAllocations() {
+        return BuildConfig.DEBUG ? Debug.getThreadAllocCount() : 0;
+    }
+
+    /**
+     * Stop the drawing thread for good. Call when the activity is destroyed.
+     */
+    public void release() {
+        mThread.quit();
+    }
+
+    /**
+     * Park the drawing thread while the game is paused.
+     * One more frame is drawn before parking, after waking up the whole screen is redrawn.
+     *
+     * @param pPaused True to stop drawing.
+     * @see GameLifecycle
+     */
+    public void setRenderingPaused(boolean pPaused) {
+        mThread.setPaused(pPaused);
+    }
+
+    /**
+     * Show the performance overlay.
+     * Set before the surface is created, so allocations of the drawing thread are counted.
+     *
+     * @param pCounters Counters shared with the physics, null to hide the overlay.
+     * @see PerfHud
+     */
+    public void setPerfCounters(PerfCounters pCounters) {
+        this.mCounters = pCounters;
+        this.mHud = pCounters != null ? new PerfHud(pCounters, Ball.RADIUS * 1.5f) : null;
+        mFullRedraw = true;
+    }
+
     /**
      * Setter of the Ball property object.
      *
@@ -181,32 +699,39 @@ public class GraphicGameEngine extends SurfaceView implements SurfaceHolder.Call
     }
 
     /**
-     * Setter of all blocs (pattern of the game).
+     * Setter of the game state published by the physics.
+     * Ball position and level (pattern of the game) are read from it on every frame,
+     * a new level is drawn once into the level layer.
+     *
+     * @param pWorld Buffer of the game state.
+     * @see PhysicalGameEngine#getWorld()
+     */
+    public void setWorld(TripleBuffer<WorldState> pWorld) {
+        this.mWorld = pWorld;
+        mFullRedraw = true;
+    }
+
+    /**
+     * Setter of the swarm positions published by the physics.
      *
-     * @param pBlocks The list of bloc object (pattern of the game)
-     * @see Bloc
+     * @param pFrames Buffer of swarm frames, null to disable.
+     * @see Swarm
      */
-    public void setBlocks(List<Bloc> pBlocks) {
-        this.mBlocks = pBlocks;
+    public void setSwarm(TripleBuffer<Swarm.Frame> pFrames) {
+        mSwarmPaint.setStrokeWidth(Ball.RADIUS * 2);
+        this.mSwarmFrames = pFrames;
+        mFullRedraw = true;
     }
 
     /**
      * Set surface color according to luminosity level.
+     * Only the index in the precomputed gradient is stored, the drawing thread fades the color in.
+     *
+     * @param luminosity Light level captured by the device.
+     * @see ColorFade
      */
     public void setSurfaceBgColor(float luminosity) {
-
-        int color;
-        if(luminosity <= 100.0f) {
-            color = Color.GRAY;
-        } else if (luminosity > 100.0f && luminosity <= 200.0f) {
-            color = Color.BLUE;
-        } else if (luminosity > 200.0f && luminosity <= 290.0f) {
-            color = Color.CYAN;
-        } else {
-            color = Color.YELLOW;
-        }
-
-        this.surfaceBgColor = color;
+        mBackgroundColor.setValue(luminosity);
     }
 }
 
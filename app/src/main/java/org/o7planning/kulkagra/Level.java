@@ -0,0 +1,172 @@
+package org.o7planning.kulkagra;
+
+import org.o7planning.kulkagra.engine.BlocStore;
+import org.o7planning.kulkagra.engine.CollisionMap;
+import org.o7planning.kulkagra.engine.LevelGrid;
+import org.o7planning.kulkagra.engine.MazeLevel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One level of the game: cells to collide with and to draw, and the start cell.
+ * A level is either read from a file (blocs indexed by a grid) or a procedural maze.
+ * Levels are immutable, so a loaded level can be cached and reused.
+ */
+public class Level {
+
+    private static final Bloc.Type[] TYPES = Bloc.Type.values();
+
+    private final List<Bloc> mBlocks;
+    private final CollisionMap mMap;
+    private final MazeLevel mMaze;
+
+    // Identyfikator poziomu zapisywany w powtórkach
+    private final int mId;
+
+    // Komórka startowa
+    private final int mStartColumn;
+    private final int mStartRow;
+
+    /**
+     * Constructor of Level class
+     *
+     * @param pStore Blocs of the level.
+     * @param pBlocSize Size of one bloc.
+     * @param pId Id of the level, number of the level file.
+     * @see BlocStore
+     */
+    public Level(BlocStore pStore, float pBlocSize, int pId) {
+        List<Bloc> blocks = new ArrayList<>(pStore.size());
+        Bloc start = null;
+        for(int i = 0; i < pStore.size(); i++) {
+            Bloc b = new Bloc(TYPES[pStore.getType(i)],
+                    Math.round(pStore.getLeft(i) / pBlocSize),
+                    Math.round(pStore.getTop(i) / pBlocSize));
+            if(b.getType() == Bloc.Type.START && start == null)
+                start = b;
+            blocks.add(b);
+        }
+
+        this.mBlocks = Collections.unmodifiableList(blocks);
+        this.mMap = new LevelGrid(pStore, pBlocSize);
+        this.mMaze = null;
+        this.mId = pId;
+        this.mStartColumn = start != null ? start.getCellX() : 0;
+        this.mStartRow = start != null ? start.getCellY() : 0;
+    }
+
+    /**
+     * Constructor of a procedural level.
+     * Cells of the maze are generated on demand, so the level has no bloc list.
+     *
+     * @param pMaze Maze of the level.
+     * @param pId Id of the level.
+     * @see MazeLevel
+     */
+    public Level(MazeLevel pMaze, int pId) {
+        this.mBlocks = Collections.emptyList();
+        this.mMap = pMaze;
+        this.mMaze = pMaze;
+        this.mId = pId;
+        this.mStartColumn = (int) (pMaze.getStartX() / pMaze.getCellSize());
+        this.mStartRow = (int) (pMaze.getStartY() / pMaze.getCellSize());
+    }
+
+    /**
+     * Get id of the level
+     *
+     * @return Number of the level file, negative for a maze.
+     */
+    public int getId() {
+        return mId;
+    }
+
+    /**
+     * Get list of bloc (pattern of the game)
+     *
+     * @return The list of bloc object, empty for a maze.
+     * @see Bloc
+     */
+    public List<Bloc> getBlocks() {
+        return mBlocks;
+    }
+
+    /**
+     * Get cells of the level, used for collisions and drawing
+     *
+     * @return Collision map of the level.
+     * @see CollisionMap
+     */
+    public CollisionMap getMap() {
+        return mMap;
+    }
+
+    /**
+     * Prepare the part of the level around the ball.
+     * A maze asks its background generator for the chunks around a new chunk of the ball,
+     * a level from a file has nothing to do.
+     *
+     * @param pX X position of the ball.
+     * @param pY Y position of the ball.
+     */
+    public void prepareAround(float pX, float pY) {
+        if(mMaze != null)
+            mMaze.moveTo(pX, pY);
+    }
+
+    /**
+     * Get column of the start cell
+     *
+     * @return Column of the start cell.
+     */
+    public int getStartColumn() {
+        return mStartColumn;
+    }
+
+    /**
+     * Get row of the start cell
+     *
+     * @return Row of the start cell.
+     */
+    public int getStartRow() {
+        return mStartRow;
+    }
+
+    /**
+     * Get X position of the start cell center
+     *
+     * @return X position where the ball starts.
+     */
+    public float getStartX() {
+        return (mStartColumn + 0.5f) * mMap.getCellSize();
+    }
+
+    /**
+     * Get Y position of the start cell center
+     *
+     * @return Y position where the ball starts.
+     */
+    public float getStartY() {
+        return (mStartRow + 0.5f) * mMap.getCellSize();
+    }
+
+    /**
+     * Get width of the level
+     *
+     * @return Width in pixels.
+     */
+    public int getWidth() {
+        return (int) Math.ceil(mMap.getColumns() * mMap.getCellSize());
+    }
+
+    /**
+     * Get height of the level
+     *
+     * @return Height in pixels.
+     */
+    public int getHeight() {
+        return (int) Math.ceil(mMap.getRows() * mMap.getCellSize());
+    }
+}
@@ -0,0 +1,71 @@
+package org.o7planning.kulkagra;
+
+import android.content.res.Resources;
+
+import org.o7planning.kulkagra.engine.LevelParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads levels from res/raw and keeps them in memory,
+ * so a level is parsed only the first time it is played.
+ */
+public class LevelRepository {
+
+    // Pliki poziomów, indeks to numer poziomu
+    private static final int[] LEVEL_FILES = {
+            R.raw.level_0,
+            R.raw.level_1,
+            R.raw.level_2,
+            R.raw.level_3
+    };
+
+    private final Resources mResources;
+    private final Level[] mLevels = new Level[LEVEL_FILES.length];
+
+    /**
+     * Constructor of LevelRepository class
+     *
+     * @param pResources Resources of the application.
+     * @see Resources
+     */
+    public LevelRepository(Resources pResources) {
+        this.mResources = pResources;
+    }
+
+    /**
+     * Get a level, parsing it on first use.
+     *
+     * @param pNumber Number of the level.
+     * @return The level.
+     * @see Level
+     */
+    public synchronized Level get(int pNumber) {
+        if(mLevels[pNumber] == null) {
+            float blocSize = Ball.RADIUS * 2;
+            InputStream input = mResources.openRawResource(LEVEL_FILES[pNumber]);
+            try {
+                mLevels[pNumber] = new Level(LevelParser.parse(input, blocSize), blocSize, pNumber);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read level " + pNumber, e);
+            } finally {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return mLevels[pNumber];
+    }
+
+    /**
+     * Get number of levels
+     *
+     * @return Number of level files.
+     */
+    public int size() {
+        return LEVEL_FILES.length;
+    }
+}
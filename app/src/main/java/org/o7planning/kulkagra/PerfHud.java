@@ -0,0 +1,125 @@
+package org.o7planning.kulkagra;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import org.o7planning.kulkagra.engine.PerfCounters;
+import org.o7planning.kulkagra.engine.TextLine;
+
+/**
+ * Debug overlay with the performance counters: FPS, frame time,
+ * physics steps per second, blocs tested per step and allocations per frame (debug builds).
+ * Second line shows the requested and the effective rates of the sensors.
+ * Text is rebuilt twice a second from counter snapshots, in a preallocated
+ * char array, so the overlay itself does not allocate.
+ * Used only by the drawing thread.
+ *
+ * @see PerfCounters
+ */
+public class PerfHud {
+
+    // Odświeżanie tekstu
+    private static final long REFRESH_NANOS = 500000000L;
+
+    private final PerfCounters mCounters;
+    private final TextLine mLine = new TextLine(96);
+    private final TextLine mSensorLine = new TextLine(96);
+    private final Paint mTextPaint;
+    private final Paint mBackgroundPaint;
+
+    // Poprzednie odczyty liczników
+    private long mLastTime = 0;
+    private long mLastSteps;
+    private long mLastBlocs;
+    private long mLastFrames;
+    private long mLastFrameNanos;
+    private long mLastAllocations;
+    private long mLastSamples;
+    private long mLastAmbientEvents;
+    private long mLastAmbientUpdates;
+
+    /**
+     * Constructor of PerfHud class
+     *
+     * @param pCounters Counters updated by the physics and the drawing thread.
+     * @param pTextSize Size of the text.
+     */
+    public PerfHud(PerfCounters pCounters, float pTextSize) {
+        this.mCounters = pCounters;
+
+        mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mTextPaint.setColor(Color.WHITE);
+        mTextPaint.setTextSize(pTextSize);
+
+        mBackgroundPaint = new Paint();
+        mBackgroundPaint.setColor(Color.BLACK);
+        mBackgroundPaint.setAlpha(160);
+    }
+
+    /**
+     * Rebuild the text if it is old enough.
+     *
+     * @param pNow Current time in nanoseconds (System.nanoTime).
+     * @return True if the text changed and has to be drawn again.
+     */
+    public boolean update(long pNow) {
+        if(mLastTime != 0 && pNow - mLastTime < REFRESH_NANOS)
+            return false;
+
+        long steps = mCounters.getSteps();
+        long blocs = mCounters.getBlocsTested();
+        long frames = mCounters.getFrames();
+        long frameNanos = mCounters.getFrameNanos();
+        long allocations = mCounters.getAllocations();
+        long samples = mCounters.getSamples();
+        long ambientEvents = mCounters.getAmbientEvents();
+        long ambientUpdates = mCounters.getAmbientUpdates();
+        long period = mCounters.getSamplingPeriod();
+
+        if(mLastTime != 0) {
+            float seconds = (pNow - mLastTime) / 1e9f;
+            long dSteps = steps - mLastSteps;
+            long dFrames = frames - mLastFrames;
+
+            mLine.clear()
+                    .append("FPS ").appendTenths(dFrames / seconds)
+                    .append("  frame ").appendTenths(dFrames > 0 ? (frameNanos - mLastFrameNanos) / 1e6f / dFrames : 0).append("ms")
+                    .append("  steps/s ").append(Math.round(dSteps / seconds))
+                    .append("  blocs/step ").appendTenths(dSteps > 0 ? (float) (blocs - mLastBlocs) / dSteps : 0)
+                    .append("  alloc/frame ").appendTenths(dFrames > 0 ? (float) (allocations - mLastAllocations) / dFrames : 0);
+
+            // Zamówiona i rzeczywista częstotliwość sensorów
+            mSensorLine.clear()
+                    .append("tilt ").append(period > 0 ? 1000000L / period : 0).append("Hz")
+                    .append(" got ").appendTenths((samples - mLastSamples) / seconds).append("/s")
+                    .append("  ambient ").appendTenths((ambientEvents - mLastAmbientEvents) / seconds).append("/s")
+                    .append(" used ").appendTenths((ambientUpdates - mLastAmbientUpdates) / seconds).append("/s");
+        }
+
+        mLastTime = pNow;
+        mLastSteps = steps;
+        mLastBlocs = blocs;
+        mLastFrames = frames;
+        mLastFrameNanos = frameNanos;
+        mLastAllocations = allocations;
+        mLastSamples = samples;
+        mLastAmbientEvents = ambientEvents;
+        mLastAmbientUpdates = ambientUpdates;
+        return true;
+    }
+
+    /**
+     * Draw the overlay in the top left corner.
+     *
+     * @param pCanvas Canvas in screen coordinates.
+     */
+    public void draw(Canvas pCanvas) {
+        if(mLine.length() == 0)
+            return;
+        float size = mTextPaint.getTextSize();
+        pCanvas.drawRect(0, 0, pCanvas.getWidth(), size * 2.8f, mBackgroundPaint);
+        pCanvas.drawText(mLine.getChars(), 0, mLine.length(), size * 0.5f, size * 1.2f, mTextPaint);
+        pCanvas.drawText(mSensorLine.getChars(), 0, mSensorLine.length(), size * 0.5f, size * 2.4f, mTextPaint);
+    }
+}
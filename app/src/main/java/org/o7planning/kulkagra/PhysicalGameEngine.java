@@ -1,39 +1,111 @@
 package org.o7planning.kulkagra;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import android.app.Service;
-import android.graphics.RectF;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 
+import java.util.concurrent.locks.LockSupport;
+
 import org.o7planning.kulkagra.GameActivity;
 import org.o7planning.kulkagra.Ball;
 import org.o7planning.kulkagra.Bloc;
-import org.o7planning.kulkagra.Bloc.Type;
+import org.o7planning.kulkagra.engine.BallPhysics;
+import org.o7planning.kulkagra.engine.BlocStore;
+import org.o7planning.kulkagra.engine.FixedStepClock;
+import org.o7planning.kulkagra.engine.GameCore;
+import org.o7planning.kulkagra.engine.OneEuroFilter;
+import org.o7planning.kulkagra.engine.PerfCounters;
+import org.o7planning.kulkagra.engine.ReplayRecorder;
+import org.o7planning.kulkagra.engine.SampleRingBuffer;
+import org.o7planning.kulkagra.engine.SamplingGovernor;
+import org.o7planning.kulkagra.engine.Swarm;
+import org.o7planning.kulkagra.engine.TiltInput;
+import org.o7planning.kulkagra.engine.TripleBuffer;
 
 public class PhysicalGameEngine implements SensorEventListener {
 
-    private Ball mBall              = null;
-    private List<Bloc> mBlocks      = null;
-    private GameActivity mActivity  = null;
+    private Ball mBall                  = null;
+    private GameCore mCore              = null;
+    private volatile Level mLevel       = null;
+    private volatile Swarm mSwarm       = null;
+    private GameActivity mActivity      = null;
+
+    // Stan gry przekazywany do wątku rysowania
+    private final TripleBuffer<WorldState> mWorld =
+            new TripleBuffer<>(new WorldState(), new WorldState(), new WorldState());
+
+    // Stały krok symulacji, odpowiada SENSOR_DELAY_GAME (50 Hz)
+    private static final long STEP_NANOS = 20000000L;
+
+    // Maksymalne opóźnienie paczki próbek
+    private static final int MAX_REPORT_LATENCY_US  = 40000;
+
+    // Próbkowanie zależne od prędkości piłki: spoczynek, szybki ruch, zwolnienie po 1 s
+    private static final float REST_SPEED   = BallPhysics.MAX_SPEED * 0.02f;
+    private static final float FAST_SPEED   = BallPhysics.MAX_SPEED * 0.5f;
+    private static final long RATE_HOLD_NANOS = 1000000000L;
+    private final SamplingGovernor mGovernor = new SamplingGovernor(REST_SPEED, FAST_SPEED, RATE_HOLD_NANOS);
+
+    // Wątek symulacji
+    private final SimulationThread mSimulation;
+    private final FixedStepClock mClock         = new FixedStepClock(STEP_NANOS);
+    private volatile boolean mRunning           = false;
+    private volatile boolean mResetPending      = false;
+
+    // Próbki akcelerometru czekające na symulację
+    private final SampleRingBuffer mSamples     = new SampleRingBuffer(64);
 
     // Sensor init
     private SensorManager mManager  = null;
     private Sensor mAccelerometer   = null;
 
-    // Acceleration helpers vars
-    private final int ACC_RATE          = 50;
-    private final double ACC_LIMIT      = 0.3;
-    private int accCount                = 0;
-    private double accSum               = 0.0f;
-    private double accResult            = 0.0f;
-    private double mAcceleration        = 0.0f;
-    private double mAccelerationCurrent = SensorManager.GRAVITY_EARTH;
-    private double mAccelerationLast    = SensorManager.GRAVITY_EARTH;
+    // Filtr przechyłu akcelerometru (one euro)
+    private static final float FILTER_MIN_CUTOFF    = 1.5f;
+    private static final float FILTER_BETA          = 0.2f;
+    private static final float FILTER_D_CUTOFF      = 1.0f;
+
+    // Przechył po kalibracji i filtrze, liczony w wątku symulacji
+    private volatile TiltInput mInput = new TiltInput(
+            new OneEuroFilter(FILTER_MIN_CUTOFF, FILTER_BETA, FILTER_D_CUTOFF));
+
+    // Liczniki nakładki wydajności, null gdy wyłączona
+    private volatile PerfCounters mCounters = null;
+
+    // Czas rundy z czasu próbek sensora
+    private long mRoundStartTimestamp = -1;
+    private long mSampleTimestamp = 0;
+    private volatile long mLastRunNanos = 0;
+
+    // Wstrzymanie gry (pauza, tło, okno dialogowe)
+    private volatile boolean mSuspended = false;
+    private volatile boolean mContinuePending = false;
+    private boolean mPauseGap = false;
+
+    // Okres, z którym sensor jest zarejestrowany, 0 gdy nie jest
+    private int mRegisteredPeriod = 0;
+
+    // Nowy okres próbkowania, rejestracja w wątku UI a nie w wątku symulacji
+    private final Runnable mApplyPeriod = new Runnable() {
+        @Override
+        public void run() {
+            updateListener();
+        }
+    };
+
+    // Nagrywanie próbek i odtwarzanie powtórki
+    private volatile ReplayRecorder mRecorder = null;
+    private volatile boolean mReplay = false;
+
+    // Wątek powtórki czekający na symulację, budzony zamiast aktywnego czekania
+    private volatile Thread mReplayThread = null;
+
+    // Koniec rundy powtórki, następna czeka na zamknięcie okna z wynikiem
+    private volatile boolean mReplayHeld = false;
+
+    // Przechył z wektora obrotu
+    private final float[] mGravity = new float[2];
 
     /**
      * Constructor of PhysicalGameEngine class
@@ -47,6 +119,9 @@ public class PhysicalGameEngine implements SensorEventListener {
         mActivity = pView;
         mManager = (SensorManager) mActivity.getBaseContext().getSystemService(Service.SENSOR_SERVICE);
         mAccelerometer = mManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+
+        mSimulation = new SimulationThread();
+        mSimulation.start();
     }
 
     /**
@@ -58,56 +133,113 @@ public class PhysicalGameEngine implements SensorEventListener {
      */
     @Override
     public void onSensorChanged(SensorEvent pEvent) {
-        float x = pEvent.values[0];
-        float y = pEvent.values[1];
-        float z = pEvent.values[2];
-
-        // Porusz piłką jeśli inne niż null
-        if(mBall != null) {
-            // Aktualizauj pozycje piłki
-            RectF hitBox = mBall.putXAndY(x, y);
-
-            if(hitBox == null) return;
-
-            for(Bloc block : mBlocks) {
-                // Stwórz nowy blok
-                RectF inter = new RectF(block.getRectangle());
-                if(inter.intersect(hitBox)) {
-                    // Sprawdz jaki typ bloku
-                    switch(block.getType()) {
-                        case HOLE:
-                            mActivity.showInfoDialog(GameActivity.DEFEAT_DIALOG);
-                            break;
-                        case END:
-                            mActivity.showInfoDialog(GameActivity.VICTORY_DIALOG);
-                            break;
-                    }
-                    break;
-                }
-            }
+        float[] values = pEvent.values;
+        float x = values[0];
+        float y = values[1];
+
+        // Wektor obrotu zamieniony na grawitację widzianą przez urządzenie
+        if(pEvent.sensor.getType() == Sensor.TYPE_GAME_ROTATION_VECTOR) {
+            float w = values.length > 3 ? values[3]
+                    : (float) Math.sqrt(Math.max(0, 1 - x * x - y * y - values[2] * values[2]));
+            TiltInput.gravityOf(x, y, values[2], w, mGravity);
+            x = mGravity[0];
+            y = mGravity[1];
         }
 
-        // Oblicz przyśpieszenie
-        mAccelerationLast       = mAccelerationCurrent;
-        mAccelerationCurrent    = Math.sqrt(x * x + y * y + z * z);
-        mAcceleration           = (mAcceleration * 0.9f) + (mAccelerationCurrent - mAccelerationLast);
+        // Zapisz próbkę, fizyka liczy się w wątku symulacji
+        mSamples.offer(pEvent.timestamp, x, y);
+        LockSupport.unpark(mSimulation);
+    }
 
-        // Jeśli liczba obliczeń przekracza limit szybkości
-        if (accCount <= ACC_RATE) {
-            accCount++;
-            accSum += Math.abs(mAcceleration);
+    /**
+     * Choose the sensor used for the tilt. The game rotation vector fuses
+     * the gyroscope and the accelerometer, it is smooth already and is not filtered.
+     * Falls back to the accelerometer when the device has no such sensor.
+     * Call before resume().
+     *
+     * @param pRotationVector True to use the game rotation vector.
+     * @see TiltInput
+     */
+    public void setRotationVector(boolean pRotationVector) {
+        Sensor rotation = pRotationVector ? mManager.getDefaultSensor(Sensor.TYPE_GAME_ROTATION_VECTOR) : null;
+        if(rotation != null) {
+            mAccelerometer = rotation;
+            mInput = new TiltInput(null);
         } else {
+            mAccelerometer = mManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+            mInput = new TiltInput(new OneEuroFilter(FILTER_MIN_CUTOFF, FILTER_BETA, FILTER_D_CUTOFF));
+        }
+    }
 
-            // Wynik przyśpieszenia
-            accResult = accSum / ACC_RATE;
-
-            // Jeśli limit przekroczony, wyświetl alert poruszania
+    /**
+     * Take the tilt of the next sample as the neutral position of the device.
+     */
+    public void calibrate() {
+        mInput.calibrate();
+    }
 
-            // Reset zmiennych pomocniczych
-            accCount    = 0;
-            accSum      = 0;
-            accResult   = 0;
+    /**
+     * One fixed step of the game: move the ball and check collisions.
+     * End the round when the ball hits a hole or the end bloc.
+     * Called only from the simulation thread.
+     *
+     * @param pX Tilt on the X axis.
+     * @param pY Tilt on the Y axis.
+     * @return False if the round has ended.
+     */
+    private boolean step(float pX, float pY) {
+        // Porusz piłką jeśli inne niż null
+        if(mCore == null)
+            return true;
+
+        // Labirynt buduje się fragment po fragmencie wokół piłki
+        Level level = mLevel;
+        if(level != null)
+            level.prepareAround(mBall.getX(), mBall.getY());
+
+        // Rój piłek dostaje ten sam przechył
+        Swarm swarm = mSwarm;
+        if(swarm != null)
+            swarm.step(pX, pY, mBall.getPhysics().getWidth(), mBall.getPhysics().getHeight());
+
+        // Aktualizauj pozycje piłki i sprawdz jaki typ bloku
+        PerfCounters counters = mCounters;
+        mCore.setCounting(counters != null);
+        int hit = mCore.step(pX, pY);
+        if(counters != null)
+            counters.onStep(mCore.getBlocsTested());
+
+        switch(hit) {
+            case BlocStore.TYPE_HOLE:
+                endRound(GameActivity.DEFEAT_DIALOG);
+                return false;
+            case BlocStore.TYPE_END:
+                endRound(GameActivity.VICTORY_DIALOG);
+                return false;
         }
+        return true;
+    }
+
+    /**
+     * Stop the simulation and show the dialog on the UI thread.
+     *
+     * @param pDialogId Id of the dialog to show.
+     */
+    private void endRound(final int pDialogId) {
+        mLastRunNanos = mSampleTimestamp - mRoundStartTimestamp;
+        // Przed końcem rundy, żeby powtórka widziała blokadę razem z nim
+        if(mReplay)
+            mReplayHeld = true;
+        mRunning = false;
+        // Okno dialogowe czeka na gracza, akcelerometr nie jest potrzebny;
+        // rejestracja tylko w wątku UI, jak przy zmianie okresu
+        mActivity.runOnUiThread(mApplyPeriod);
+        mActivity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mActivity.showInfoDialog(pDialogId);
+            }
+        });
     }
 
     /**
@@ -126,616 +258,427 @@ public class PhysicalGameEngine implements SensorEventListener {
      */
     public void reset() {
         mBall.reset();
+        if(mSwarm != null && mLevel != null)
+            mSwarm.setLevel(mLevel.getMap());
+        publish(0);
     }
 
     /**
-     * Unregister event listener on accelerometer captor
+     * Publish ball position and level for the drawing thread.
+     * Writers are the simulation thread and the UI thread between rounds,
+     * the lock only orders them, the reader never takes it.
+     *
+     * @param pSampleTimestamp Sensor timestamp of the last sample, 0 between rounds.
+     * @see TripleBuffer
      */
-    public void stop() {
-
-        mManager.unregisterListener(this, mAccelerometer);
+    private void publish(long pSampleTimestamp) {
+        synchronized (mWorld) {
+            mWorld.getBack().set(mBall.getX(), mBall.getY(), mLevel, pSampleTimestamp);
+            mWorld.publish();
+        }
     }
 
     /**
-     * Attach accelerometer sensor to the event listener (to start tracking data)
+     * Get time of the last finished round, measured with sensor timestamps
+     * from the first sample of the round to the sample that ended it.
+     *
+     * @return Time in nanoseconds.
      */
-    public void resume() {
-
-        mManager.registerListener(this, mAccelerometer, SensorManager.SENSOR_DELAY_GAME);
+    public long getLastRunNanos() {
+        return mLastRunNanos;
     }
 
     /**
-     * Set ball of the game
+     * Get the level being played
      *
-     * @param pBall New ball object
-     * @see Ball
+     * @return The level, null before the first level is set.
+     * @see Level
      */
-    public void setBall(Ball pBall) {
-        this.mBall = pBall;
+    public Level getLevel() {
+        return mLevel;
     }
 
     /**
-     * Define list of bloc used to create pattern of the game
-     * Bloc are instantiated with type, X & Y values.
+     * Get the state published for the drawing thread
      *
-     * @return Nothing.
-     * @see Bloc
+     * @return Buffer of the game state.
+     * @see WorldState
      */
-    public List<Bloc> buildLabyrinthe0() {
-        mBlocks = new ArrayList<>();
-        mBlocks.add(new Bloc(Type.HOLE, 0, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 1));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 2));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 5));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 6));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 7));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 11));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 13));
+    public TripleBuffer<WorldState> getWorld() {
+        return mWorld;
+    }
 
-        mBlocks.add(new Bloc(Type.HOLE, 1, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 1, 13));
+    /**
+     * Unregister event listener on accelerometer captor
+     */
+    public void stop() {
+        mRunning = false;
+        updateListener();
+    }
 
-        mBlocks.add(new Bloc(Type.HOLE, 2, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 2, 13));
+    /**
+     * Suspend or continue the round without restarting it.
+     * While suspended the accelerometer is detached, after it the time of the pause
+     * is neither simulated nor counted in the round time.
+     *
+     * @param pSuspended True when the game is paused, in background or behind a dialog.
+     * @see GameLifecycle
+     */
+    public void setSuspended(boolean pSuspended) {
+        if(mSuspended == pSuspended)
+            return;
+        // Powtórka wznawia zegar w miejscu zapisanym w nagraniu
+        if(!pSuspended && !mReplay)
+            mContinuePending = true;
+        mSuspended = pSuspended;
+        updateListener();
+        LockSupport.unpark(mSimulation);
+    }
 
-        mBlocks.add(new Bloc(Type.HOLE, 3, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 3, 13));
+    // Akcelerometr podłączony tylko podczas rundy, gdy gra nie jest wstrzymana,
+    // z okresem wybranym przez SamplingGovernor
+    private synchronized void updateListener() {
+        boolean listen = mRunning && !mSuspended && !mReplay;
+        int period = listen ? mGovernor.getPeriodUs() : 0;
+        if(period == mRegisteredPeriod)
+            return;
+        if(mRegisteredPeriod != 0)
+            mManager.unregisterListener(this, mAccelerometer);
+        mRegisteredPeriod = period;
+        if(period != 0) {
+            // Próbki przychodzą paczkami, rzadziej budząc procesor
+            mManager.registerListener(this, mAccelerometer, period, MAX_REPORT_LATENCY_US);
+        }
 
-        mBlocks.add(new Bloc(Type.HOLE, 4, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 13));
+        PerfCounters counters = mCounters;
+        if(counters != null)
+            counters.setSamplingPeriod(period);
+    }
 
-        mBlocks.add(new Bloc(Type.HOLE, 5, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 5, 13));
+    /**
+     * Get the sampling period requested from the tilt sensor
+     *
+     * @return Period in microseconds, 0 when the sensor is not registered.
+     * @see SamplingGovernor
+     */
+    public synchronized int getSamplingPeriodUs() {
+        return mRegisteredPeriod;
+    }
 
-        mBlocks.add(new Bloc(Type.HOLE, 6, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 6, 13));
+    /**
+     * Attach accelerometer sensor to the event listener (to start tracking data)
+     */
+    public void resume() {
+        mReplay = false;
+        mResetPending = true;
+        mRunning = true;
+        updateListener();
+        LockSupport.unpark(mSimulation);
+    }
 
-        mBlocks.add(new Bloc(Type.HOLE, 7, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 7, 13));
+    /**
+     * Stop tracking data and finish the simulation thread.
+     */
+    public void release() {
+        stop();
+        mSimulation.interrupt();
+    }
 
-        mBlocks.add(new Bloc(Type.HOLE, 8, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 13));
+    /**
+     * Thread stepping the physics with a fixed time step.
+     * Sensor events are queued in a ring buffer, the thread wakes up when
+     * samples arrive, drains them in one pass and for every sample runs as many
+     * steps as its timestamp allows, so no sample of a batch is lost.
+     */
+    private class SimulationThread extends Thread implements SampleRingBuffer.SampleSink {
 
-        mBlocks.add(new Bloc(Type.HOLE, 9, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 9, 13));
+        SimulationThread() {
+            super("Simulation");
+            setDaemon(true);
+        }
 
-        mBlocks.add(new Bloc(Type.HOLE, 10, 0));
+        /**
+         * When the thread is started, run this method.
+         */
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                // Nowa runda, stare próbki i czas nie mają znaczenia
+                if(mResetPending) {
+                    mResetPending = false;
+                    mSamples.clear();
+                    mClock.reset();
+                    mInput.reset();
+                    mRoundStartTimestamp = -1;
+
+                    Level level = mLevel;
+                    ReplayRecorder recorder = mRecorder;
+                    if(recorder != null && level != null)
+                        recorder.startRound(level.getId());
+                    wakeReplay();
+                }
 
-        mBlocks.add(new Bloc(Type.HOLE, 10, 13));
+                // Po pauzie: stare próbki odrzucone, zegar od nowa
+                if(mContinuePending) {
+                    mContinuePending = false;
+                    mSamples.clear();
+                    mClock.reset();
+                    mPauseGap = true;
+
+                    ReplayRecorder recorder = mRecorder;
+                    if(recorder != null)
+                        recorder.continueRound();
+                    wakeReplay();
+                }
 
-        mBlocks.add(new Bloc(Type.HOLE, 11, 0));
+                if(mSamples.drain(this) == 0)
+                    LockSupport.park(this);
+                else
+                    wakeReplay();
+            }
+        }
 
-        mBlocks.add(new Bloc(Type.HOLE, 11, 13));
+        // Miejsce w buforze, nowa runda albo wznowiony zegar dla czekającej powtórki
+        private void wakeReplay() {
+            Thread replay = mReplayThread;
+            if(replay != null)
+                LockSupport.unpark(replay);
+        }
 
-        mBlocks.add(new Bloc(Type.HOLE, 12, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 12, 13));
+        /**
+         * Filter the sample and step the game up to its timestamp.
+         *
+         * @param pTimestamp Sensor timestamp in nanoseconds.
+         * @param pX Tilt on the X axis.
+         * @param pY Tilt on the Y axis.
+         */
+        @Override
+        public void onSample(long pTimestamp, float pX, float pY) {
+            // Próbki z paczki dostarczonej już po wstrzymaniu są odrzucane
+            if(!mRunning || (mSuspended && !mReplay))
+                return;
+
+            // Powtórka zawiera przechył już po filtrze
+            float x = pX;
+            float y = pY;
+            if(!mReplay) {
+                TiltInput input = mInput;
+                input.process(pTimestamp, pX, pY);
+                x = input.getX();
+                y = input.getY();
+            }
 
-        mBlocks.add(new Bloc(Type.HOLE, 13, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 13, 13));
+            ReplayRecorder recorder = mRecorder;
+            if(recorder != null)
+                recorder.record(pTimestamp, x, y);
 
-        mBlocks.add(new Bloc(Type.HOLE, 14, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 14, 13));
+            PerfCounters counters = mCounters;
+            if(counters != null)
+                counters.onSample();
 
-        mBlocks.add(new Bloc(Type.HOLE, 15, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 15, 13));
+            if(mRoundStartTimestamp < 0) {
+                mRoundStartTimestamp = pTimestamp;
+            } else if(mPauseGap) {
+                // Czas pauzy nie liczy się do czasu rundy
+                mRoundStartTimestamp += pTimestamp - mSampleTimestamp;
+            }
+            mPauseGap = false;
+            mSampleTimestamp = pTimestamp;
 
-        mBlocks.add(new Bloc(Type.HOLE, 16, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 13));
+            int steps = mClock.advance(pTimestamp);
+            for(int i = 0; i < steps; i++) {
+                if(!step(x, y))
+                    break;
+            }
+            // Czas nagrania z innej sesji nie jest próbką opóźnienia
+            if(steps > 0)
+                publish(mReplay ? 0 : pTimestamp);
 
-        mBlocks.add(new Bloc(Type.HOLE, 17, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 17, 13));
+            // Szybka piłka potrzebuje częstszych próbek, piłka w spoczynku rzadszych
+            if(!mReplay && mCore != null && mGovernor.update(pTimestamp, mCore.getBall().getSpeed()))
+                mActivity.runOnUiThread(mApplyPeriod);
+        }
+    }
 
-        mBlocks.add(new Bloc(Type.HOLE, 18, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 18, 13));
+    /**
+     * Set ball of the game
+     *
+     * @param pBall New ball object
+     * @see Ball
+     */
+    public void setBall(Ball pBall) {
+        this.mBall = pBall;
+        this.mCore = new GameCore(pBall.getPhysics());
+    }
 
-        mBlocks.add(new Bloc(Type.HOLE, 19, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 1));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 2));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 5));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 6));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 7));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 11));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 13));
+    /**
+     * Set the level to play.
+     * Ball is moved to the start cell and may move over the whole level,
+     * collisions use the cells of the level and the level is published for the drawing thread.
+     *
+     * @param pLevel Level of the game.
+     * @see Level
+     */
+    public void setLevel(Level pLevel) {
+        mBall.setLevelSize(pLevel.getWidth(), pLevel.getHeight());
+        mBall.setStart(pLevel.getStartX(), pLevel.getStartY());
+        mCore.setMap(pLevel.getMap());
+        mLevel = pLevel;
+        if(mSwarm != null)
+            mSwarm.setLevel(pLevel.getMap());
+        publish(0);
+    }
 
-        Bloc b = new Bloc(Type.START, 2, 2);
-        mBall.setInitialRectangle(new RectF(b.getRectangle()));
-        mBlocks.add(b);
+    /**
+     * Record the filtered tilt of every sample fed to the physics.
+     *
+     * @param pRecorder Recorder of the replay, null to stop recording.
+     * @see ReplayRecorder
+     */
+    public void setRecorder(ReplayRecorder pRecorder) {
+        this.mRecorder = pRecorder;
+    }
 
-        mBlocks.add(new Bloc(Type.END, 2, 11));
+    /**
+     * Check if the current round is a replay
+     *
+     * @return True between replayRound() and the next resume().
+     * @see ReplayPlayer
+     */
+    public boolean isReplaying() {
+        return mReplay;
+    }
+
+    /**
+     * Start a round of a replay: sensors are detached, the level is set
+     * and the ball goes back to the start. The previous round is simulated to its end
+     * and its result closed by the player first. Returns when the simulation thread
+     * has started the round, so no replayed sample is lost.
+     *
+     * @param pLevel Level of the round.
+     * @see ReplayPlayer
+     */
+    public void replayRound(Level pLevel) {
+        mReplayThread = Thread.currentThread();
+        // Koniec poprzedniej rundy zasymulowany, jej wynik zamknięty przez gracza
+        if(!awaitDrained() || !awaitReplayRelease())
+            return;
+
+        mRunning = false;
+        mReplay = true;
+        updateListener();
+        setLevel(pLevel);
+        reset();
+
+        mResetPending = true;
+        mRunning = true;
+        LockSupport.unpark(mSimulation);
+        // Symulacja budzi wątek powtórki po rozpoczęciu rundy
+        while(mResetPending && !mSimulation.isInterrupted() && !Thread.currentThread().isInterrupted())
+            LockSupport.park(this);
+    }
 
-        return mBlocks;
+    /**
+     * Continue a replayed round after a recorded pause. Samples given before
+     * are simulated first, then the clock starts again like in the recorded run.
+     *
+     * @return False if the round has ended.
+     * @see ReplayPlayer
+     */
+    public boolean replayContinue() {
+        // Najpierw wcześniejsze próbki, potem zegar od nowa
+        if(!awaitDrained() || !mRunning)
+            return false;
+
+        mContinuePending = true;
+        LockSupport.unpark(mSimulation);
+        while(mContinuePending && !mSimulation.isInterrupted() && !Thread.currentThread().isInterrupted())
+            LockSupport.park(this);
+        return mRunning;
     }
 
-    public List<Bloc> buildLabyrinthe1() {
-        mBlocks = new ArrayList<>();
-        mBlocks.add(new Bloc(Type.HOLE, 0, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 1));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 2));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 5));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 6));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 7));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 11));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 1, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 1, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 2, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 2, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 3, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 3, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 4, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 1));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 2));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 5));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 6));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 7));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 5, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 5, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 6, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 6, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 7, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 7, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 8, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 1));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 2));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 6));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 7));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 11));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 9, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 9, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 10, 0));
-
-        mBlocks.add(new Bloc(Type.HOLE, 10, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 11, 0));
-
-        mBlocks.add(new Bloc(Type.HOLE, 11, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 12, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 12, 1));
-        mBlocks.add(new Bloc(Type.HOLE, 12, 2));
-        mBlocks.add(new Bloc(Type.HOLE, 12, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 12, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 12, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 12, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 12, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 12, 11));
-        mBlocks.add(new Bloc(Type.HOLE, 12, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 12, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 13, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 13, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 14, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 14, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 15, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 15, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 16, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 1));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 2));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 5));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 6));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 7));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 11));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 17, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 17, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 18, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 18, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 19, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 20, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 20, 1));
-        mBlocks.add(new Bloc(Type.HOLE, 20, 2));
-        mBlocks.add(new Bloc(Type.HOLE, 20, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 20, 7));
-        mBlocks.add(new Bloc(Type.HOLE, 20, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 20, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 20, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 20, 11));
-        mBlocks.add(new Bloc(Type.HOLE, 20, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 20, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 21, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 21, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 22, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 22, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 23, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 24, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 24, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 25, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 25, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 26, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 1));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 2));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 5));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 6));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 7));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 11));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 13));
-
-        Bloc b = new Bloc(Type.START, 2, 2);
-        mBall.setInitialRectangle(new RectF(b.getRectangle()));
-        mBlocks.add(b);
-
-        mBlocks.add(new Bloc(Type.END, 23, 3));
-
-        return mBlocks;
+    /**
+     * Wait until the player has closed the result of the last replayed round.
+     * Returns at once if no replayed round has ended since the last release.
+     *
+     * @return False if the waiting thread was interrupted.
+     * @see #releaseReplay()
+     */
+    public boolean awaitReplayRelease() {
+        mReplayThread = Thread.currentThread();
+        while(mReplayHeld) {
+            if(Thread.currentThread().isInterrupted())
+                return false;
+            LockSupport.park(this);
+        }
+        return true;
     }
 
-    public List<Bloc> buildLabyrinthe2() {
-        mBlocks = new ArrayList<>();
-        mBlocks.add(new Bloc(Type.HOLE, 0, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 1));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 2));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 5));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 6));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 7));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 11));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 1, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 2, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 3, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 5, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 6, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 7, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 9, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 10, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 11, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 12, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 13, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 14, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 15, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 17, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 18, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 20, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 21, 4));
-
-        mBlocks.add(new Bloc(Type.HOLE, 4, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 5, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 6, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 7, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 9, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 10, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 11, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 12, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 13, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 14, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 15, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 17, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 18, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 20, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 21, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 22, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 24, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 25, 8));
-
-        mBlocks.add(new Bloc(Type.HOLE, 1, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 1, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 2, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 2, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 3, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 3, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 4, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 5, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 5, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 5, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 6, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 6, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 7, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 7, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 8, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 9, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 9, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 9, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 10, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 10, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 11, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 11, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 12, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 12, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 13, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 13, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 13, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 14, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 14, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 15, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 15, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 16, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 17, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 17, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 17, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 18, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 18, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 19, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 20, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 20, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 21, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 21, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 21, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 22, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 22, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 23, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 24, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 24, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 25, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 25, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 26, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 1));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 2));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 5));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 6));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 7));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 11));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 26, 13));
+    /**
+     * Let the replay go on with its next round. UI thread, when the result dialog is closed.
+     *
+     * @see #awaitReplayRelease()
+     */
+    public void releaseReplay() {
+        mReplayHeld = false;
+        Thread replay = mReplayThread;
+        if(replay != null)
+            LockSupport.unpark(replay);
+    }
 
-        Bloc b = new Bloc(Type.START, 2, 2);
-        mBall.setInitialRectangle(new RectF(b.getRectangle()));
-        mBlocks.add(b);
+    // Wszystkie podane próbki zasymulowane (albo odrzucone po końcu rundy)
+    private boolean awaitDrained() {
+        while(!mSamples.isEmpty()) {
+            if(mSimulation.isInterrupted() || Thread.currentThread().isInterrupted())
+                return false;
+            LockSupport.unpark(mSimulation);
+            LockSupport.park(this);
+        }
+        return true;
+    }
 
-        mBlocks.add(new Bloc(Type.END, 25, 12));
+    /**
+     * Feed one replayed sample to the simulation, in place of the sensor.
+     *
+     * @param pTimestamp Recorded timestamp in nanoseconds.
+     * @param pX Recorded tilt on the X axis.
+     * @param pY Recorded tilt on the Y axis.
+     * @return False if the round has ended.
+     */
+    public boolean replaySample(long pTimestamp, float pX, float pY) {
+        if(!mRunning)
+            return false;
+        // Pełny bufor: czekaj, aż symulacja opróżni go i obudzi wątek powtórki
+        while(!mSamples.offer(pTimestamp, pX, pY)) {
+            if(mSimulation.isInterrupted() || Thread.currentThread().isInterrupted())
+                return false;
+            LockSupport.unpark(mSimulation);
+            LockSupport.park(this);
+        }
+        LockSupport.unpark(mSimulation);
+        return true;
+    }
 
-        return mBlocks;
+    /**
+     * Count physics steps and tested cells for the performance overlay.
+     *
+     * @param pCounters Counters shared with the drawing thread, null to disable.
+     * @see PerfCounters
+     */
+    public void setPerfCounters(PerfCounters pCounters) {
+        this.mCounters = pCounters;
     }
 
-    public List<Bloc> buildLabyrinthe3() {
-        mBlocks = new ArrayList<>();
-        mBlocks.add(new Bloc(Type.HOLE, 0, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 1));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 2));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 5));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 6));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 7));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 11));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 0, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 1, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 1, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 2, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 2, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 3, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 3, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 4, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 1));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 2));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 11));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 4, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 5, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 5, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 6, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 6, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 7, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 7, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 7, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 7, 5));
-        mBlocks.add(new Bloc(Type.HOLE, 7, 6));
-        mBlocks.add(new Bloc(Type.HOLE, 7, 7));
-        mBlocks.add(new Bloc(Type.HOLE, 7, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 7, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 7, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 7, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 8, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 8, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 9, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 9, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 9, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 9, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 10, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 10, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 11, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 11, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 12, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 12, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 13, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 13, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 14, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 14, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 14, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 14, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 15, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 15, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 15, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 15, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 16, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 3));;
-        mBlocks.add(new Bloc(Type.HOLE, 16, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 5));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 6));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 7));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 16, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 17, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 17, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 18, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 18, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 19, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 1));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 2));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 11));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 19, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 20, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 20, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 21, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 21, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 22, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 22, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 23, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 13));
-
-        mBlocks.add(new Bloc(Type.HOLE, 23, 0));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 1));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 2));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 3));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 4));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 5));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 6));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 7));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 8));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 9));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 10));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 11));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 12));
-        mBlocks.add(new Bloc(Type.HOLE, 23, 13));
-
-        Bloc b = new Bloc(Type.START, 2, 2);
-        mBall.setInitialRectangle(new RectF(b.getRectangle()));
-        mBlocks.add(b);
-
-        mBlocks.add(new Bloc(Type.END, 12, 6));
-
-        return mBlocks;
+    /**
+     * Set the swarm of balls stepped together with the player ball.
+     * Swarm balls never end the round.
+     *
+     * @param pSwarm Swarm of balls, null to disable.
+     * @see Swarm
+     */
+    public void setSwarm(Swarm pSwarm) {
+        this.mSwarm = pSwarm;
+        if(pSwarm != null && mLevel != null)
+            pSwarm.setLevel(mLevel.getMap());
     }
-}
\ No newline at end of file
+}
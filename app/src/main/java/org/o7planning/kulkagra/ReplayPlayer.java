@@ -0,0 +1,117 @@
+package org.o7planning.kulkagra;
+
+import org.o7planning.kulkagra.engine.ReplayReader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a recorded replay: rounds start on their level and samples are fed
+ * to the physics in place of the sensor, paced like the recording.
+ * The simulation depends only on the samples and their timestamps,
+ * so a replay reproduces the recorded run exactly.
+ * After a round ends the next one waits until the player closes its result,
+ * and the activity is closed after the last one.
+ *
+ * @see PhysicalGameEngine#replayRound(Level)
+ */
+public class ReplayPlayer extends Thread implements ReplayReader.Listener {
+
+    private static final String TAG = "ReplayPlayer";
+
+    private final GameActivity mActivity;
+    private final PhysicalGameEngine mEngine;
+    private final File mFile;
+
+    // Początek bieżącej rundy: czas nagrania i czas odtwarzania
+    private long mFirstTimestamp = -1;
+    private long mStartNanos = 0;
+
+    // Runda zakończona, jej pozostałe próbki są pomijane
+    private boolean mRoundOver = false;
+
+    /**
+     * Constructor of ReplayPlayer class
+     *
+     * @param pActivity Activity providing the levels.
+     * @param pEngine Physics fed with the samples.
+     * @param pFile Replay to play.
+     */
+    public ReplayPlayer(GameActivity pActivity, PhysicalGameEngine pEngine, File pFile) {
+        super(TAG);
+        setDaemon(true);
+        this.mActivity = pActivity;
+        this.mEngine = pEngine;
+        this.mFile = pFile;
+    }
+
+    /**
+     * When the thread is started, run this method.
+     */
+    @Override
+    public void run() {
+        InputStream input = null;
+        try {
+            input = new FileInputStream(mFile);
+            ReplayReader.read(input, this);
+            // Wynik ostatniej rundy zamknięty, powtórka skończona
+            if(mEngine.awaitReplayRelease() && !isInterrupted())
+                mActivity.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        mActivity.finish();
+                    }
+                });
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if(input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean onRound(int pLevelId) {
+        mEngine.replayRound(mActivity.levelFor(pLevelId));
+        mFirstTimestamp = -1;
+        mRoundOver = false;
+        return !isInterrupted();
+    }
+
+    @Override
+    public boolean onSample(long pTimestamp, float pX, float pY) {
+        if(mRoundOver)
+            return !isInterrupted();
+
+        // Tempo nagrania
+        if(mFirstTimestamp < 0) {
+            mFirstTimestamp = pTimestamp;
+            mStartNanos = System.nanoTime();
+        }
+        long wait = (pTimestamp - mFirstTimestamp) - (System.nanoTime() - mStartNanos);
+        if(wait > 0)
+            LockSupport.parkNanos(wait);
+
+        mRoundOver = !mEngine.replaySample(pTimestamp, pX, pY);
+        return !isInterrupted();
+    }
+
+    @Override
+    public boolean onContinue() {
+        if(mRoundOver)
+            return !isInterrupted();
+
+        // Pauza nie jest odtwarzana, tempo liczone od następnej próbki
+        mRoundOver = !mEngine.replayContinue();
+        mFirstTimestamp = -1;
+        return !isInterrupted();
+    }
+}
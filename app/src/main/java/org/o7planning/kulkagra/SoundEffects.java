@@ -0,0 +1,113 @@
+package org.o7planning.kulkagra;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.MediaPlayer;
+import android.media.SoundPool;
+
+/**
+ * Short sound effects of the game, decoded once into a SoundPool
+ * and played by id, so a round transition does no I/O and creates no player.
+ * Loading runs in the background, an effect played before it is ready is skipped.
+ * An effect too long for SoundPool (about 1 MB of decoded PCM per sample) is played
+ * by a MediaPlayer prepared once and rewound on every play.
+ * Used from the UI thread.
+ */
+public class SoundEffects {
+
+    // Efekty, indeks to identyfikator efektu
+    public static final int WIN     = 0;
+    public static final int LOOSE   = 1;
+
+    private static final int[] EFFECT_FILES = {
+            R.raw.win,
+            R.raw.loose
+    };
+
+    // loose.mp3 to 6 s stereo 48 kHz, po zdekodowaniu ok. 1,17 MB, SoundPool by go uciął
+    private static final boolean[] STREAMED = {
+            false,
+            true
+    };
+
+    private static final int MAX_STREAMS = 2;
+
+    private final SoundPool mPool;
+    private final int[] mSoundIds = new int[EFFECT_FILES.length];
+    private final boolean[] mLoaded = new boolean[EFFECT_FILES.length];
+
+    // Ostatnio odtwarzany strumień efektu
+    private final int[] mStreams = new int[EFFECT_FILES.length];
+
+    // Odtwarzacze długich efektów, null dla efektów z SoundPool
+    private final MediaPlayer[] mPlayers = new MediaPlayer[EFFECT_FILES.length];
+
+    /**
+     * Constructor of SoundEffects class, starts decoding of all effects.
+     *
+     * @param pContext Context of the application.
+     * @see SoundPool
+     */
+    public SoundEffects(Context pContext) {
+        AudioAttributes attributes = new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_GAME)
+                .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                .build();
+        mPool = new SoundPool.Builder()
+                .setMaxStreams(MAX_STREAMS)
+                .setAudioAttributes(attributes)
+                .build();
+
+        mPool.setOnLoadCompleteListener(new SoundPool.OnLoadCompleteListener() {
+            @Override
+            public void onLoadComplete(SoundPool pPool, int pSoundId, int pStatus) {
+                for(int i = 0; i < mSoundIds.length; i++) {
+                    if(mSoundIds[i] == pSoundId)
+                        mLoaded[i] = pStatus == 0;
+                }
+            }
+        });
+
+        for(int i = 0; i < EFFECT_FILES.length; i++) {
+            if(STREAMED[i])
+                mPlayers[i] = MediaPlayer.create(pContext, EFFECT_FILES[i]);
+            else
+                mSoundIds[i] = mPool.load(pContext, EFFECT_FILES[i], 1);
+        }
+    }
+
+    /**
+     * Play an effect from the start, stopping it first if it is still playing.
+     *
+     * @param pEffect Id of the effect (WIN, LOOSE).
+     */
+    public void play(int pEffect) {
+        MediaPlayer player = mPlayers[pEffect];
+        if(player != null) {
+            // Pauza zamiast stop, odtwarzacz nie musi być przygotowany od nowa
+            if(player.isPlaying())
+                player.pause();
+            player.seekTo(0);
+            player.start();
+            return;
+        }
+        if(!mLoaded[pEffect])
+            return;
+        if(mStreams[pEffect] != 0)
+            mPool.stop(mStreams[pEffect]);
+        mStreams[pEffect] = mPool.play(mSoundIds[pEffect], 1.0f, 1.0f, 1, 0, 1.0f);
+    }
+
+    /**
+     * Free the decoded effects.
+     */
+    public void release() {
+        mPool.release();
+        for(int i = 0; i < mPlayers.length; i++) {
+            if(mPlayers[i] != null) {
+                mPlayers[i].release();
+                mPlayers[i] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.o7planning.kulkagra;
+
+import org.o7planning.kulkagra.engine.TripleBuffer;
+
+/**
+ * State of the game published by the physics for the renderer:
+ * ball position, the level being played and the time of the sensor sample.
+ * Instances are slots of a TripleBuffer and are reused.
+ *
+ * @see TripleBuffer
+ */
+public class WorldState {
+
+    // Pozycja piłki
+    private float mBallX;
+    private float mBallY;
+
+    // Aktualny poziom
+    private Level mLevel = null;
+
+    // Czas próbki sensora, z której policzono stan
+    private long mSampleTimestamp = 0;
+
+    /**
+     * Copy the state of the game into this slot.
+     *
+     * @param pBallX X position of the ball.
+     * @param pBallY Y position of the ball.
+     * @param pLevel Level being played.
+     * @param pSampleTimestamp Sensor timestamp of the sample, 0 if the state does not come from a sample.
+     */
+    public void set(float pBallX, float pBallY, Level pLevel, long pSampleTimestamp) {
+        this.mBallX = pBallX;
+        this.mBallY = pBallY;
+        this.mLevel = pLevel;
+        this.mSampleTimestamp = pSampleTimestamp;
+    }
+
+    /**
+     * Get X position of the ball
+     *
+     * @return X position.
+     */
+    public float getBallX() {
+        return mBallX;
+    }
+
+    /**
+     * Get Y position of the ball
+     *
+     * @return Y position.
+     */
+    public float getBallY() {
+        return mBallY;
+    }
+
+    /**
+     * Get sensor timestamp of the sample the state was computed from
+     *
+     * @return Timestamp in nanoseconds (SystemClock.elapsedRealtimeNanos base), 0 if none.
+     */
+    public long getSampleTimestamp() {
+        return mSampleTimestamp;
+    }
+
+    /**
+     * Get level being played
+     *
+     * @return The level, null before the first level is set.
+     * @see Level
+     */
+    public Level getLevel() {
+        return mLevel;
+    }
+}
@@ -0,0 +1,46 @@
+package org.o7planning.kulkagra.benchmark;
+
+import org.o7planning.kulkagra.engine.BallPhysics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one integration step of the ball (formerly Ball.putXAndY).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BallPhysicsBenchmark {
+
+    private BallPhysics mBall;
+    private int mStep = 0;
+
+    @Setup
+    public void setUp() {
+        mBall = new BallPhysics(LevelGenerator.BLOC_SIZE / 2);
+        mBall.setWidth(1920);
+        mBall.setHeight(1080);
+        mBall.setStart(960, 540);
+    }
+
+    @Benchmark
+    public float step() {
+        // Przechył zmienia kierunek co 256 kroków, piłka odbija się od brzegów
+        float tilt = (mStep++ & 256) == 0 ? 3.0f : -3.0f;
+        mBall.step(tilt, -tilt);
+        return mBall.getX() + mBall.getY();
+    }
+}
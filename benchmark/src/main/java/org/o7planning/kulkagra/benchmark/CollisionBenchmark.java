@@ -0,0 +1,97 @@
+package org.o7planning.kulkagra.benchmark;
+
+import org.o7planning.kulkagra.engine.BallPhysics;
+import org.o7planning.kulkagra.engine.BlocStore;
+import org.o7planning.kulkagra.engine.GameCore;
+import org.o7planning.kulkagra.engine.LevelGrid;
+import org.o7planning.kulkagra.engine.LevelParser;
+import org.o7planning.kulkagra.engine.SweptCollision;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the collision pass done on every physics step:
+ * the swept move alone and the whole GameCore.step around it.
+ * Should stay flat from 100 to 1,000,000 blocs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+
+    // Liczba pozycji piłki, potęga dwójki
+    private static final int POSITIONS = 4096;
+
+    @Param({ "100", "1000", "10000", "100000", "1000000" })
+    public int blocs;
+
+    // Najdłuższy ruch w jednym kroku, szybka piłka
+    private static final float MAX_MOVE = LevelGenerator.BLOC_SIZE * 2;
+
+    private LevelGrid mGrid;
+    private GameCore mCore;
+    private final float[] mX = new float[POSITIONS];
+    private final float[] mY = new float[POSITIONS];
+    private final float[] mDx = new float[POSITIONS];
+    private final float[] mDy = new float[POSITIONS];
+    private int mNext = 0;
+    private int mStep = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] level = LevelGenerator.generate(blocs, 42);
+        BlocStore store = LevelParser.parse(new ByteArrayInputStream(level), LevelGenerator.BLOC_SIZE);
+        mGrid = new LevelGrid(store, LevelGenerator.BLOC_SIZE);
+
+        // Losowe pozycje i ruchy piłki w całym poziomie
+        Random random = new Random(7);
+        float size = LevelGenerator.side(blocs) * LevelGenerator.BLOC_SIZE;
+        for(int i = 0; i < POSITIONS; i++) {
+            mX[i] = random.nextFloat() * size;
+            mY[i] = random.nextFloat() * size;
+            mDx[i] = (random.nextFloat() * 2 - 1) * MAX_MOVE;
+            mDy[i] = (random.nextFloat() * 2 - 1) * MAX_MOVE;
+        }
+
+        // Piłka na starcie w rogu poziomu
+        BallPhysics ball = new BallPhysics(LevelGenerator.BLOC_SIZE / 2);
+        ball.setWidth((int) size);
+        ball.setHeight((int) size);
+        ball.setStart(LevelGenerator.BLOC_SIZE * 1.5f, LevelGenerator.BLOC_SIZE * 1.5f);
+        mCore = new GameCore(ball);
+        mCore.setMap(mGrid);
+    }
+
+    @Benchmark
+    public long sweep() {
+        int i = mNext++ & (POSITIONS - 1);
+        return SweptCollision.sweep(mGrid, mX[i], mY[i], mDx[i], mDy[i], LevelGenerator.BLOC_SIZE / 2);
+    }
+
+    @Benchmark
+    public int step() {
+        // Jak w grze: po trafieniu piłka wraca na start
+        float tilt = (mStep++ & 256) == 0 ? 3.0f : -3.0f;
+        int hit = mCore.step(tilt, -tilt);
+        if(hit != GameCore.NO_HIT)
+            mCore.getBall().reset();
+        return hit;
+    }
+}
@@ -0,0 +1,57 @@
+package org.o7planning.kulkagra.benchmark;
+
+import java.util.Random;
+
+/**
+ * Generates level files (same format as res/raw/level_*.txt) of a given size.
+ * A border of holes, random holes inside, start and end in opposite corners.
+ */
+final class LevelGenerator {
+
+    // Rozmiar bloku w benchmarkach
+    static final float BLOC_SIZE = 20.0f;
+
+    private LevelGenerator() { }
+
+    /**
+     * Build a square level with about pBlocs blocs.
+     *
+     * @param pBlocs Expected number of blocs.
+     * @param pSeed Seed of the random holes.
+     * @return Content of the level file.
+     */
+    static byte[] generate(int pBlocs, long pSeed) {
+        // Połowa komórek to dziury
+        int side = Math.max(4, (int) Math.ceil(Math.sqrt(pBlocs * 2.0)));
+        byte[] level = new byte[side * (side + 1)];
+        Random random = new Random(pSeed);
+
+        int i = 0;
+        for(int y = 0; y < side; y++) {
+            for(int x = 0; x < side; x++) {
+                byte cell;
+                if(x == 0 || y == 0 || x == side - 1 || y == side - 1)
+                    cell = '#';
+                else if(x == 1 && y == 1)
+                    cell = 'S';
+                else if(x == side - 2 && y == side - 2)
+                    cell = 'E';
+                else
+                    cell = random.nextBoolean() ? (byte) '#' : (byte) '.';
+                level[i++] = cell;
+            }
+            level[i++] = '\n';
+        }
+        return level;
+    }
+
+    /**
+     * Get side of the level generated for pBlocs blocs
+     *
+     * @param pBlocs Expected number of blocs.
+     * @return Number of cells in a row.
+     */
+    static int side(int pBlocs) {
+        return Math.max(4, (int) Math.ceil(Math.sqrt(pBlocs * 2.0)));
+    }
+}
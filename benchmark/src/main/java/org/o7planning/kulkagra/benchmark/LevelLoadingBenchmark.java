@@ -0,0 +1,53 @@
+package org.o7planning.kulkagra.benchmark;
+
+import org.o7planning.kulkagra.engine.BlocStore;
+import org.o7planning.kulkagra.engine.LevelGrid;
+import org.o7planning.kulkagra.engine.LevelParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building a level: parsing the level file and indexing the blocs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelLoadingBenchmark {
+
+    @Param({ "100", "1000", "10000", "100000", "1000000" })
+    public int blocs;
+
+    private byte[] mLevel;
+
+    @Setup
+    public void setUp() {
+        mLevel = LevelGenerator.generate(blocs, 42);
+    }
+
+    @Benchmark
+    public BlocStore parse() throws IOException {
+        return LevelParser.parse(new ByteArrayInputStream(mLevel), LevelGenerator.BLOC_SIZE);
+    }
+
+    @Benchmark
+    public LevelGrid parseAndIndex() throws IOException {
+        BlocStore store = LevelParser.parse(new ByteArrayInputStream(mLevel), LevelGenerator.BLOC_SIZE);
+        return new LevelGrid(store, LevelGenerator.BLOC_SIZE);
+    }
+}
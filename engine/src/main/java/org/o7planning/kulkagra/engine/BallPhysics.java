@@ -0,0 +1,207 @@
+package org.o7planning.kulkagra.engine;
+
+/**
+ * Movement of the ball: speed integration, speed limit and rebound on the borders.
+ * Plain Java, no Android classes, so it can run in JVM tests and benchmarks.
+ */
+public class BallPhysics {
+
+    // Maksymalna prędkość piłki
+    public static final float MAX_SPEED = 4.0f;
+
+    // Zwolnienie piłki
+    public static final float COMPENSATOR = 8.0f;
+
+    // Wyrównanie "granic"
+    public static final float REBOUND = 1.75f;
+
+    // Promień piłki
+    private final float mRadius;
+
+    // Pozycja początkowa
+    private float mStartX;
+    private float mStartY;
+
+    // Koordynaty X i Y
+    private float mX;
+    private float mY;
+
+    // Predkość na osi
+    private float mSpeedX = 0;
+    private float mSpeedY = 0;
+
+    // Rozmiar obrazu
+    private int mWidth = -1;
+    private int mHeight = -1;
+
+    /**
+     * Constructor of BallPhysics class
+     *
+     * @param pRadius Radius of the ball.
+     */
+    public BallPhysics(float pRadius) {
+        this.mRadius = pRadius;
+    }
+
+    /**
+     * Set start position and move the ball there.
+     *
+     * @param pX X position of the ball center.
+     * @param pY Y position of the ball center.
+     */
+    public void setStart(float pX, float pY) {
+        this.mStartX = pX;
+        this.mStartY = pY;
+        this.mX = pX;
+        this.mY = pY;
+    }
+
+    /**
+     * Set width of the area the ball moves in
+     *
+     * @param pWidth Width of the area.
+     */
+    public void setWidth(int pWidth) {
+        this.mWidth = pWidth;
+    }
+
+    /**
+     * Set height of the area the ball moves in
+     *
+     * @param pHeight Height of the area.
+     */
+    public void setHeight(int pHeight) {
+        this.mHeight = pHeight;
+    }
+
+    /**
+     * Move the ball by one step.
+     *
+     * @param pX Tilt on the X axis.
+     * @param pY Tilt on the Y axis.
+     * @return False if the size of the area is not known yet.
+     */
+    public boolean step(float pX, float pY) {
+        if(this.mWidth < 0 || this.mHeight < 0)
+            return false;
+
+        mSpeedX = accelerate(mSpeedX, pX);
+        mSpeedY = accelerate(mSpeedY, pY);
+
+        setPosX(mX + mSpeedY);
+        setPosY(mY + mSpeedX);
+        return true;
+    }
+
+    /**
+     * Move the ball back along its last step, to the point of impact.
+     *
+     * @param pX X position of the ball center.
+     * @param pY Y position of the ball center.
+     */
+    public void placeAt(float pX, float pY) {
+        this.mX = pX;
+        this.mY = pY;
+    }
+
+    /**
+     * Add the tilt to a speed and limit it to MAX_SPEED.
+     *
+     * @param pSpeed Current speed on the axis.
+     * @param pTilt Tilt on the same axis.
+     * @return New speed.
+     */
+    public static float accelerate(float pSpeed, float pTilt) {
+        float speed = pSpeed + pTilt / COMPENSATOR;
+        if(speed > MAX_SPEED)
+            speed = MAX_SPEED;
+        if(speed < -MAX_SPEED)
+            speed = -MAX_SPEED;
+        return speed;
+    }
+
+    // Reset piłki do początkowej pozycji
+    public void reset() {
+        mSpeedX = 0;
+        mSpeedY = 0;
+        mX = mStartX;
+        mY = mStartY;
+    }
+
+    // Jeśli piłka wyleci poza granice, zmień kierunek piłki
+    private void setPosX(float pPosX) {
+        mX = pPosX;
+        if(mX < mRadius) {
+            mX = mRadius;
+            mSpeedY = -mSpeedY / REBOUND;
+        } else if(mX > mWidth - mRadius) {
+            mX = mWidth - mRadius;
+            mSpeedY = -mSpeedY / REBOUND;
+        }
+    }
+
+    private void setPosY(float pPosY) {
+        mY = pPosY;
+        if(mY < mRadius) {
+            mY = mRadius;
+            mSpeedX = -mSpeedX / REBOUND;
+        } else if(mY > mHeight - mRadius) {
+            mY = mHeight - mRadius;
+            mSpeedX = -mSpeedX / REBOUND;
+        }
+    }
+
+    /**
+     * Get X position
+     *
+     * @return X position of the ball center.
+     */
+    public float getX() {
+        return mX;
+    }
+
+    /**
+     * Get Y position
+     *
+     * @return Y position of the ball center.
+     */
+    public float getY() {
+        return mY;
+    }
+
+    /**
+     * Get width of the area the ball moves in
+     *
+     * @return Width, -1 if not known yet.
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * Get height of the area the ball moves in
+     *
+     * @return Height, -1 if not known yet.
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Get radius of the ball
+     *
+     * @return Radius.
+     */
+    public float getRadius() {
+        return mRadius;
+    }
+
+    /**
+     * Get speed of the ball on its faster axis
+     *
+     * @return Distance moved in one step, at most MAX_SPEED.
+     */
+    public float getSpeed() {
+        return Math.max(Math.abs(mSpeedX), Math.abs(mSpeedY));
+    }
+}
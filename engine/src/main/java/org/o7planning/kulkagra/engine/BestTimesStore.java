@@ -0,0 +1,285 @@
+package org.o7planning.kulkagra.engine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+
+/**
+ * Best run time of every level and the progress of the game, kept in an append-only
+ * file of fixed-size records. Every record has a checksum, so a record torn by a crash
+ * is skipped on load and the records around it stay valid.
+ * The file is read once, sequentially, at load. New records are collected in memory
+ * and appended in batches by an executor, never on the calling thread.
+ * When the file grows past COMPACT_BYTES it is rewritten with only the current
+ * best times and progress, into a temporary file renamed over the old one.
+ */
+public class BestTimesStore {
+
+    // Rodzaje rekordów
+    private static final int KIND_TIME      = 1;
+    private static final int KIND_PROGRESS  = 2;
+
+    // Rodzaj, poziom, wartość, suma kontrolna
+    static final int RECORD_BYTES = 4 + 4 + 8 + 4;
+
+    // Rozmiar pliku, po którym zostają tylko najnowsze rekordy
+    static final int COMPACT_BYTES = RECORD_BYTES * 256;
+
+    private final File mFile;
+    private final Executor mExecutor;
+
+    // Indeks w pamięci: najlepszy czas poziomu
+    private final Map<Integer, Long> mBest = new HashMap<>();
+    private int mProgress = -1;
+
+    // Rekordy czekające na zapis
+    private ByteBuffer mPending = ByteBuffer.allocate(RECORD_BYTES * 64);
+    private boolean mFlushScheduled = false;
+    private final CRC32 mCrc = new CRC32();
+
+    // Zapis i przepisanie pliku po kolei, rozmiar pliku znany pod tą blokadą
+    private final Object mFileLock = new Object();
+    private long mFileBytes = -1;
+
+    /**
+     * Constructor of BestTimesStore class
+     *
+     * @param pFile File of the records.
+     * @param pExecutor Executor doing the writes.
+     */
+    public BestTimesStore(File pFile, Executor pExecutor) {
+        this.mFile = pFile;
+        this.mExecutor = pExecutor;
+    }
+
+    /**
+     * Read all records with one sequential read.
+     * A missing file is an empty store.
+     */
+    public synchronized void load() {
+        if(!mFile.isFile())
+            return;
+
+        byte[] data = new byte[(int) mFile.length()];
+        InputStream input = null;
+        try {
+            input = new FileInputStream(mFile);
+            int read = 0;
+            while(read < data.length) {
+                int n = input.read(data, read, data.length - read);
+                if(n < 0)
+                    break;
+                read += n;
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(data, 0, read);
+            while(buffer.remaining() >= RECORD_BYTES) {
+                int start = buffer.position();
+                int kind = buffer.getInt();
+                int level = buffer.getInt();
+                long value = buffer.getLong();
+                int crc = buffer.getInt();
+                // Uszkodzony rekord (przerwany zapis): szukamy początku następnego bajt po bajcie
+                if(crc != checksum(data, start)) {
+                    buffer.position(start + 1);
+                    continue;
+                }
+                apply(kind, level, value);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if(input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Submit the time of a finished run.
+     *
+     * @param pLevel Id of the level.
+     * @param pNanos Time of the run in nanoseconds.
+     * @return True if it is the best time of the level.
+     */
+    public synchronized boolean submit(int pLevel, long pNanos) {
+        Long best = mBest.get(pLevel);
+        if(pNanos <= 0 || (best != null && best <= pNanos))
+            return false;
+        mBest.put(pLevel, pNanos);
+        append(KIND_TIME, pLevel, pNanos);
+        return true;
+    }
+
+    /**
+     * Save the progress of the game.
+     *
+     * @param pLevel Number of the next level to play.
+     */
+    public synchronized void saveProgress(int pLevel) {
+        if(pLevel == mProgress)
+            return;
+        mProgress = pLevel;
+        append(KIND_PROGRESS, pLevel, 0);
+    }
+
+    /**
+     * Get the best time of a level
+     *
+     * @param pLevel Id of the level.
+     * @return Best time in nanoseconds, -1 if the level was never finished.
+     */
+    public synchronized long getBest(int pLevel) {
+        Long best = mBest.get(pLevel);
+        return best != null ? best : -1;
+    }
+
+    /**
+     * Get the saved progress of the game
+     *
+     * @param pDefault Value used when nothing was saved.
+     * @return Number of the next level to play.
+     */
+    public synchronized int getProgress(int pDefault) {
+        return mProgress >= 0 ? mProgress : pDefault;
+    }
+
+    // Stan indeksu po rekordzie
+    private void apply(int pKind, int pLevel, long pValue) {
+        if(pKind == KIND_TIME) {
+            Long best = mBest.get(pLevel);
+            if(best == null || pValue < best)
+                mBest.put(pLevel, pValue);
+        } else if(pKind == KIND_PROGRESS) {
+            mProgress = pLevel;
+        }
+    }
+
+    // Rekord do paczki, zapis paczki zlecony raz
+    private void append(int pKind, int pLevel, long pValue) {
+        // Zapis nie nadąża: większa paczka zamiast gubienia rekordu
+        if(mPending.remaining() < RECORD_BYTES) {
+            ByteBuffer larger = ByteBuffer.allocate(mPending.capacity() * 2);
+            mPending.flip();
+            larger.put(mPending);
+            mPending = larger;
+        }
+        putRecord(mPending, pKind, pLevel, pValue);
+
+        if(!mFlushScheduled) {
+            mFlushScheduled = true;
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    }
+
+    /**
+     * Append the pending records to the file and sync it to the disk.
+     * A file grown past COMPACT_BYTES is rewritten instead.
+     * Called by the executor.
+     */
+    void flush() {
+        synchronized (mFileLock) {
+            if(mFileBytes < 0)
+                mFileBytes = mFile.length();
+
+            byte[] batch;
+            boolean compact;
+            synchronized (this) {
+                mFlushScheduled = false;
+                compact = mFileBytes + mPending.position() > COMPACT_BYTES;
+                if(compact) {
+                    // Indeks w pamięci zawiera już rekordy z paczki
+                    batch = snapshot();
+                } else {
+                    batch = new byte[mPending.position()];
+                    mPending.flip();
+                    mPending.get(batch);
+                }
+                mPending.clear();
+            }
+
+            if(compact)
+                compact(batch);
+            else if(batch.length > 0 && write(mFile, batch, true))
+                mFileBytes += batch.length;
+        }
+    }
+
+    // Najnowsze rekordy: najlepszy czas każdego poziomu i postęp
+    private byte[] snapshot() {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * (mBest.size() + 1));
+        for(Map.Entry<Integer, Long> entry : mBest.entrySet())
+            putRecord(buffer, KIND_TIME, entry.getKey(), entry.getValue());
+        if(mProgress >= 0)
+            putRecord(buffer, KIND_PROGRESS, mProgress, 0);
+        byte[] records = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(records);
+        return records;
+    }
+
+    // Nowy plik obok starego, podmieniony dopiero po zapisie na dysk
+    private void compact(byte[] pRecords) {
+        File temp = new File(mFile.getPath() + ".tmp");
+        if(!write(temp, pRecords, false))
+            return;
+        if(temp.renameTo(mFile)) {
+            mFileBytes = pRecords.length;
+        } else {
+            // Stary plik zostaje, następny zapis spróbuje ponownie
+            new IOException("Cannot replace " + mFile).printStackTrace();
+            temp.delete();
+        }
+    }
+
+    // Zapis bajtów z synchronizacją z dyskiem
+    private static boolean write(File pFile, byte[] pData, boolean pAppend) {
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(pFile, pAppend);
+            output.write(pData);
+            output.getFD().sync();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            if(output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void putRecord(ByteBuffer pBuffer, int pKind, int pLevel, long pValue) {
+        int start = pBuffer.position();
+        pBuffer.putInt(pKind).putInt(pLevel).putLong(pValue);
+        pBuffer.putInt(checksum(pBuffer.array(), start));
+    }
+
+    // Suma kontrolna pierwszych 16 bajtów rekordu
+    private int checksum(byte[] pData, int pOffset) {
+        mCrc.reset();
+        mCrc.update(pData, pOffset, RECORD_BYTES - 4);
+        return (int) mCrc.getValue();
+    }
+}
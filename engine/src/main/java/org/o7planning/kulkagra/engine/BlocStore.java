@@ -0,0 +1,132 @@
+package org.o7planning.kulkagra.engine;
+
+import java.util.Arrays;
+
+/**
+ * Primitive storage of the level blocs.
+ * Bounds and types are kept in parallel arrays, so collision tests
+ * read plain floats and never allocate.
+ */
+public class BlocStore {
+
+    // Typy bloków, w tej samej kolejności co Bloc.Type
+    public static final byte TYPE_HOLE  = 0;
+    public static final byte TYPE_START = 1;
+    public static final byte TYPE_END   = 2;
+
+    // Granice bloków
+    private float[] mLeft;
+    private float[] mTop;
+    private float[] mRight;
+    private float[] mBottom;
+
+    // Typ bloku
+    private byte[] mTypes;
+
+    // Liczba bloków
+    private int mSize = 0;
+
+    /**
+     * Constructor of BlocStore class
+     *
+     * @param pCapacity Expected number of blocs.
+     */
+    public BlocStore(int pCapacity) {
+        int capacity = Math.max(pCapacity, 1);
+        mLeft   = new float[capacity];
+        mTop    = new float[capacity];
+        mRight  = new float[capacity];
+        mBottom = new float[capacity];
+        mTypes  = new byte[capacity];
+    }
+
+    /**
+     * Add a bloc placed on the level grid.
+     *
+     * @param pType Type of the bloc (TYPE_HOLE, TYPE_START or TYPE_END).
+     * @param pX Position of the bloc in the X axis.
+     * @param pY Position of the bloc in the Y axis.
+     * @param pBlocSize Size of one bloc.
+     * @return Index of the new bloc.
+     */
+    public int add(byte pType, int pX, int pY, float pBlocSize) {
+        if(mSize == mTypes.length)
+            grow();
+
+        mLeft[mSize]    = pX * pBlocSize;
+        mTop[mSize]     = pY * pBlocSize;
+        mRight[mSize]   = (pX + 1) * pBlocSize;
+        mBottom[mSize]  = (pY + 1) * pBlocSize;
+        mTypes[mSize]   = pType;
+        return mSize++;
+    }
+
+    /**
+     * Getter type of bloc
+     *
+     * @param pIndex Index of the bloc.
+     * @return The type of bloc.
+     */
+    public byte getType(int pIndex) {
+        return mTypes[pIndex];
+    }
+
+    /**
+     * Get left side of the bloc
+     *
+     * @param pIndex Index of the bloc.
+     * @return Left coordinate.
+     */
+    public float getLeft(int pIndex) {
+        return mLeft[pIndex];
+    }
+
+    /**
+     * Get top side of the bloc
+     *
+     * @param pIndex Index of the bloc.
+     * @return Top coordinate.
+     */
+    public float getTop(int pIndex) {
+        return mTop[pIndex];
+    }
+
+    /**
+     * Get right side of the bloc
+     *
+     * @param pIndex Index of the bloc.
+     * @return Right coordinate.
+     */
+    public float getRight(int pIndex) {
+        return mRight[pIndex];
+    }
+
+    /**
+     * Get bottom side of the bloc
+     *
+     * @param pIndex Index of the bloc.
+     * @return Bottom coordinate.
+     */
+    public float getBottom(int pIndex) {
+        return mBottom[pIndex];
+    }
+
+    /**
+     * Get number of blocs
+     *
+     * @return Number of blocs in the store.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    // Powiększ tablice dwukrotnie
+    private void grow() {
+        int capacity = mTypes.length * 2;
+        mLeft   = Arrays.copyOf(mLeft, capacity);
+        mTop    = Arrays.copyOf(mTop, capacity);
+        mRight  = Arrays.copyOf(mRight, capacity);
+        mBottom = Arrays.copyOf(mBottom, capacity);
+        mTypes  = Arrays.copyOf(mTypes, capacity);
+    }
+}
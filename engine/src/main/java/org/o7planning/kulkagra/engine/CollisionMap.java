@@ -0,0 +1,45 @@
+package org.o7planning.kulkagra.engine;
+
+/**
+ * Level seen by the collision: a grid of cells, each cell empty or holding
+ * one bloc type. Blocs always fill a whole cell.
+ *
+ * @see LevelGrid
+ * @see MazeLevel
+ */
+public interface CollisionMap {
+
+    // Pusta komórka
+    int NONE = -1;
+
+    /**
+     * Get size of one cell
+     *
+     * @return Cell size.
+     */
+    float getCellSize();
+
+    /**
+     * Get number of columns
+     *
+     * @return Number of columns.
+     */
+    int getColumns();
+
+    /**
+     * Get number of rows
+     *
+     * @return Number of rows.
+     */
+    int getRows();
+
+    /**
+     * Get type of the bloc in a cell. Start blocs are reported as NONE,
+     * they never end a round.
+     *
+     * @param pColumn Column of the cell.
+     * @param pRow Row of the cell.
+     * @return BlocStore.TYPE_HOLE, BlocStore.TYPE_END or NONE (also outside the map).
+     */
+    int typeAt(int pColumn, int pRow);
+}
@@ -0,0 +1,83 @@
+package org.o7planning.kulkagra.engine;
+
+/**
+ * Colour moving smoothly along a ColorRamp towards the latest sensor value.
+ * The sensor only sets the target index, the drawing thread moves the colour
+ * a bit on every frame, so a new reading fades in instead of jumping.
+ * setValue() may be called from any thread, update() and getColor() only from the drawing thread.
+ *
+ * @see ColorRamp
+ */
+public class ColorFade {
+
+    private final ColorRamp mRamp;
+
+    // Stała czasowa przejścia
+    private final float mTimeConstantNanos;
+
+    // Docelowy indeks ustawiany przez sensor
+    private volatile int mTarget;
+
+    // Bieżąca pozycja na gradiencie, używana tylko w wątku rysowania
+    private float mPosition;
+    private long mLastTime = -1;
+    private int mColor;
+
+    /**
+     * Constructor of ColorFade class
+     *
+     * @param pRamp Gradient of the colours.
+     * @param pTimeConstantNanos Time after which about 63% of a change is shown.
+     * @param pStartValue Sensor value shown before the first reading.
+     */
+    public ColorFade(ColorRamp pRamp, long pTimeConstantNanos, float pStartValue) {
+        this.mRamp = pRamp;
+        this.mTimeConstantNanos = pTimeConstantNanos;
+        this.mTarget = pRamp.indexOf(pStartValue);
+        this.mPosition = mTarget;
+        this.mColor = pRamp.colorAt(mTarget);
+    }
+
+    /**
+     * Set the latest sensor value. Nothing is allocated.
+     *
+     * @param pValue Sensor value.
+     */
+    public void setValue(float pValue) {
+        mTarget = mRamp.indexOf(pValue);
+    }
+
+    /**
+     * Move the colour towards the target.
+     *
+     * @param pNow Current time in nanoseconds (System.nanoTime).
+     * @return True if the colour changed.
+     */
+    public boolean update(long pNow) {
+        int target = mTarget;
+        long last = mLastTime;
+        mLastTime = pNow;
+        if(mPosition == target)
+            return false;
+
+        float alpha = last < 0 ? 1 : 1 - (float) Math.exp(-(pNow - last) / mTimeConstantNanos);
+        mPosition += (target - mPosition) * alpha;
+        if(Math.abs(target - mPosition) < 0.5f)
+            mPosition = target;
+
+        int color = mRamp.colorAt(Math.round(mPosition));
+        if(color == mColor)
+            return false;
+        mColor = color;
+        return true;
+    }
+
+    /**
+     * Get the colour to draw
+     *
+     * @return ARGB colour.
+     */
+    public int getColor() {
+        return mColor;
+    }
+}
@@ -0,0 +1,89 @@
+package org.o7planning.kulkagra.engine;
+
+/**
+ * Colour gradient precomputed into a lookup table of SIZE colours.
+ * A sensor value is mapped to an index of the table with one multiplication,
+ * nothing is parsed or allocated after the table is built.
+ *
+ * @see ColorFade
+ */
+public class ColorRamp {
+
+    // Liczba kolorów w tablicy
+    public static final int SIZE = 256;
+
+    private final int[] mColors = new int[SIZE];
+
+    // Zakres wartości sensora rozpięty na tablicy
+    private final float mMin;
+    private final float mScale;
+
+    /**
+     * Constructor of ColorRamp class, builds the table.
+     * Values below the first stop take its colour, values above the last one the last colour.
+     *
+     * @param pValues Sensor values of the stops, ascending, at least two.
+     * @param pColors ARGB colours of the stops.
+     */
+    public ColorRamp(float[] pValues, int[] pColors) {
+        if(pValues.length < 2 || pValues.length != pColors.length)
+            throw new IllegalArgumentException("Ramp needs at least two stops with colours");
+
+        float max = pValues[pValues.length - 1];
+        this.mMin = pValues[0];
+        this.mScale = (SIZE - 1) / (max - mMin);
+
+        int stop = 0;
+        for(int i = 0; i < SIZE; i++) {
+            float value = mMin + i / mScale;
+            while(stop < pValues.length - 2 && value > pValues[stop + 1])
+                stop++;
+            float t = (value - pValues[stop]) / (pValues[stop + 1] - pValues[stop]);
+            t = Math.max(0, Math.min(1, t));
+            mColors[i] = blend(pColors[stop], pColors[stop + 1], Math.round(t * 256));
+        }
+    }
+
+    /**
+     * Map a sensor value to an index of the table.
+     *
+     * @param pValue Sensor value.
+     * @return Index in [0, SIZE - 1].
+     */
+    public int indexOf(float pValue) {
+        float index = (pValue - mMin) * mScale;
+        if(!(index > 0))
+            return 0;
+        if(index >= SIZE - 1)
+            return SIZE - 1;
+        return Math.round(index);
+    }
+
+    /**
+     * Get colour of the table
+     *
+     * @param pIndex Index in [0, SIZE - 1].
+     * @return ARGB colour.
+     */
+    public int colorAt(int pIndex) {
+        return mColors[pIndex];
+    }
+
+    /**
+     * Mix two colours channel by channel.
+     *
+     * @param pFrom First ARGB colour.
+     * @param pTo Second ARGB colour.
+     * @param pAmount Part of the second colour in [0, 256].
+     * @return Mixed ARGB colour.
+     */
+    public static int blend(int pFrom, int pTo, int pAmount) {
+        int color = 0;
+        for(int shift = 0; shift < 32; shift += 8) {
+            int from = (pFrom >>> shift) & 0xFF;
+            int to = (pTo >>> shift) & 0xFF;
+            color |= (from + (((to - from) * pAmount) >> 8)) << shift;
+        }
+        return color;
+    }
+}
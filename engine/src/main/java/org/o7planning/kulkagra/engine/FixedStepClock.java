@@ -0,0 +1,69 @@
+package org.o7planning.kulkagra.engine;
+
+/**
+ * Clock of the physics simulation.
+ * Converts sensor timestamps into a number of fixed steps, so the ball moves
+ * the same way whatever rate the device delivers accelerometer events at.
+ */
+public class FixedStepClock {
+
+    // Maksymalna liczba kroków nadrabiana za jednym razem
+    private static final int MAX_STEPS = 10;
+
+    // Długość kroku w nanosekundach
+    private final long mStepNanos;
+
+    // Czas, do którego doszła symulacja (-1 gdy nie wystartowała)
+    private long mSimulationTime = -1;
+
+    /**
+     * Constructor of FixedStepClock class
+     *
+     * @param pStepNanos Duration of one simulation step in nanoseconds.
+     */
+    public FixedStepClock(long pStepNanos) {
+        this.mStepNanos = pStepNanos;
+    }
+
+    /**
+     * Move the clock to the timestamp of the latest sample.
+     * The first sample only starts the clock. Time which cannot be
+     * covered by MAX_STEPS steps (long pause, sensor stall) is dropped.
+     *
+     * @param pTimestamp Sensor timestamp in nanoseconds.
+     * @return Number of steps to simulate.
+     */
+    public int advance(long pTimestamp) {
+        if(mSimulationTime < 0) {
+            mSimulationTime = pTimestamp;
+            return 0;
+        }
+
+        long steps = (pTimestamp - mSimulationTime) / mStepNanos;
+        if(steps <= 0)
+            return 0;
+
+        if(steps > MAX_STEPS) {
+            mSimulationTime = pTimestamp - (pTimestamp - mSimulationTime) % mStepNanos;
+            return MAX_STEPS;
+        }
+        mSimulationTime += steps * mStepNanos;
+        return (int) steps;
+    }
+
+    /**
+     * Forget the current time, next sample starts the clock again.
+     */
+    public void reset() {
+        mSimulationTime = -1;
+    }
+
+    /**
+     * Get duration of one step
+     *
+     * @return Step duration in nanoseconds.
+     */
+    public long getStepNanos() {
+        return mStepNanos;
+    }
+}
@@ -0,0 +1,114 @@
+package org.o7planning.kulkagra.engine;
+
+/**
+ * Headless core of the game: one fixed step moves the ball
+ * and sweeps its movement against the blocs of the level.
+ *
+ * @see BallPhysics
+ * @see CollisionMap
+ */
+public class GameCore {
+
+    // Piłka nie dotknęła żadnego bloku
+    public static final int NO_HIT = CollisionMap.NONE;
+
+    private final BallPhysics mBall;
+    private volatile CollisionMap mMap = null;
+
+    // Czas zderzenia w ostatnim kroku
+    private float mImpactTime = SweptCollision.NO_IMPACT;
+
+    // Liczba bloków sprawdzonych w ostatnim kroku, liczona tylko na potrzeby statystyk
+    private boolean mCounting = false;
+    private int mBlocsTested = 0;
+
+    /**
+     * Constructor of GameCore class
+     *
+     * @param pBall Physics of the ball.
+     * @see BallPhysics
+     */
+    public GameCore(BallPhysics pBall) {
+        this.mBall = pBall;
+    }
+
+    /**
+     * Set the level to collide with
+     *
+     * @param pMap Cells of the level.
+     * @see CollisionMap
+     */
+    public void setMap(CollisionMap pMap) {
+        this.mMap = pMap;
+    }
+
+    /**
+     * One fixed step of the game. Nothing is allocated.
+     * The whole movement of the step is swept against the blocs,
+     * so the ball cannot jump over a bloc whatever its speed.
+     *
+     * @param pX Tilt on the X axis.
+     * @param pY Tilt on the Y axis.
+     * @return Type of the bloc hit by the ball (BlocStore.TYPE_*) or NO_HIT.
+     */
+    public int step(float pX, float pY) {
+        CollisionMap map = mMap;
+        float x0 = mBall.getX();
+        float y0 = mBall.getY();
+        mBlocsTested = 0;
+        if(!mBall.step(pX, pY) || map == null)
+            return NO_HIT;
+
+        float dx = mBall.getX() - x0;
+        float dy = mBall.getY() - y0;
+        if(mCounting)
+            mBlocsTested = SweptCollision.blocCount(map, x0, y0, dx, dy, mBall.getRadius());
+        long sweep = SweptCollision.sweep(map, x0, y0, dx, dy, mBall.getRadius());
+        int hit = SweptCollision.hitType(sweep);
+        float impact = SweptCollision.hitTime(sweep);
+
+        mImpactTime = impact;
+        if(hit == CollisionMap.NONE)
+            return NO_HIT;
+
+        // Zatrzymaj piłkę w miejscu zderzenia
+        mBall.placeAt(x0 + dx * impact, y0 + dy * impact);
+        return hit;
+    }
+
+    /**
+     * Get time of impact of the last step
+     *
+     * @return Fraction of the last step in [0, 1], or SweptCollision.NO_IMPACT.
+     */
+    public float getImpactTime() {
+        return mImpactTime;
+    }
+
+    /**
+     * Count the blocs tested by every step. Off by default, counting costs a second pass over the cells.
+     *
+     * @param pCounting True to count, for the performance overlay.
+     */
+    public void setCounting(boolean pCounting) {
+        this.mCounting = pCounting;
+    }
+
+    /**
+     * Get number of blocs tested by the collision of the last step
+     *
+     * @return Number of blocs, 0 when counting is off.
+     */
+    public int getBlocsTested() {
+        return mBlocsTested;
+    }
+
+    /**
+     * Get physics of the ball
+     *
+     * @return The ball.
+     */
+    public BallPhysics getBall() {
+        return mBall;
+    }
+}
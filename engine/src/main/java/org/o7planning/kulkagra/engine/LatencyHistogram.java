@@ -0,0 +1,107 @@
+package org.o7planning.kulkagra.engine;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies with fixed memory: one bucket per BUCKET_NANOS,
+ * longer latencies go into the last bucket, the maximum is kept exactly.
+ * Recording does not allocate and does not lock, it can be read from another thread.
+ */
+public class LatencyHistogram {
+
+    // Szerokość kubełka: 1 ms
+    public static final long BUCKET_NANOS = 1000000L;
+
+    private final AtomicLongArray mBuckets;
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Constructor of LatencyHistogram class
+     *
+     * @param pBuckets Number of buckets, the last one holds everything longer.
+     */
+    public LatencyHistogram(int pBuckets) {
+        this.mBuckets = new AtomicLongArray(pBuckets);
+    }
+
+    /**
+     * Record one latency.
+     *
+     * @param pNanos Latency in nanoseconds, negative values are ignored.
+     */
+    public void record(long pNanos) {
+        if(pNanos < 0)
+            return;
+        int bucket = (int) Math.min(pNanos / BUCKET_NANOS, mBuckets.length() - 1);
+        mBuckets.incrementAndGet(bucket);
+        mCount.incrementAndGet();
+
+        long max = mMax.get();
+        while(pNanos > max && !mMax.compareAndSet(max, pNanos))
+            max = mMax.get();
+    }
+
+    /**
+     * Get a percentile of the recorded latencies
+     *
+     * @param pPercentile Percentile between 0 and 100.
+     * @return Upper bound of the bucket holding the percentile in nanoseconds, 0 if nothing was recorded.
+     */
+    public long percentile(double pPercentile) {
+        long count = mCount.get();
+        if(count == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(count * pPercentile / 100.0));
+        long seen = 0;
+        for(int i = 0; i < mBuckets.length(); i++) {
+            seen += mBuckets.get(i);
+            // Ostatni kubełek nie ma górnej granicy
+            if(seen >= rank)
+                return i < mBuckets.length() - 1 ? Math.min((i + 1) * BUCKET_NANOS, mMax.get()) : mMax.get();
+        }
+        return mMax.get();
+    }
+
+    /**
+     * Get number of recorded latencies
+     *
+     * @return Number of samples.
+     */
+    public long getCount() {
+        return mCount.get();
+    }
+
+    /**
+     * Get the longest recorded latency
+     *
+     * @return Maximum in nanoseconds.
+     */
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * Forget all recorded latencies.
+     */
+    public void reset() {
+        for(int i = 0; i < mBuckets.length(); i++)
+            mBuckets.set(i, 0);
+        mCount.set(0);
+        mMax.set(0);
+    }
+
+    /**
+     * Describe the histogram, for logs.
+     *
+     * @return Count, p50, p99 and max in milliseconds.
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "count=%d p50=%.1fms p99=%.1fms max=%.1fms",
+                getCount(), percentile(50) / 1e6, percentile(99) / 1e6, getMax() / 1e6);
+    }
+}
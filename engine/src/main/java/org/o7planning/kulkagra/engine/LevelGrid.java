@@ -0,0 +1,139 @@
+package org.o7planning.kulkagra.engine;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid index of the level blocs.
+ * Every bloc occupies exactly one cell of the size of the ball diameter,
+ * so a collision sweep only has to look at the cells crossed by the ball.
+ * Start blocs are not indexed, they never end a round.
+ */
+public class LevelGrid implements CollisionMap {
+
+    // Brak bloku w komórce
+    public static final int NO_BLOC = -1;
+
+    // Bloki poziomu
+    private final BlocStore mStore;
+
+    // Rozmiar komórki siatki
+    private final float mCellSize;
+
+    // Wymiary siatki
+    private final int mColumns;
+    private final int mRows;
+
+    // Indeksy bloków zapisane wierszami
+    private final int[] mCells;
+
+    /**
+     * Constructor of LevelGrid class
+     *
+     * @param pStore Blocs of the level (pattern of the game).
+     * @param pCellSize Size of one cell (and of one bloc).
+     * @see BlocStore
+     */
+    public LevelGrid(BlocStore pStore, float pCellSize) {
+        this.mStore = pStore;
+        this.mCellSize = pCellSize;
+
+        int columns = 0;
+        int rows = 0;
+        for(int i = 0; i < pStore.size(); i++) {
+            columns = Math.max(columns, columnOf(i) + 1);
+            rows = Math.max(rows, rowOf(i) + 1);
+        }
+        this.mColumns = columns;
+        this.mRows = rows;
+        this.mCells = new int[columns * rows];
+        Arrays.fill(mCells, NO_BLOC);
+
+        for(int i = 0; i < pStore.size(); i++) {
+            int column = columnOf(i);
+            int row = rowOf(i);
+            // Start nie kończy rundy, nie może zasłaniać dziury obok
+            if(column < 0 || row < 0 || pStore.getType(i) == BlocStore.TYPE_START)
+                continue;
+            int index = row * columns + column;
+            // Jak przy przeszukiwaniu listy wygrywa pierwszy blok
+            if(mCells[index] == NO_BLOC)
+                mCells[index] = i;
+        }
+    }
+
+    /**
+     * Get type of the bloc in a cell.
+     *
+     * @param pColumn Column of the cell.
+     * @param pRow Row of the cell.
+     * @return Type of the bloc or NONE.
+     */
+    @Override
+    public int typeAt(int pColumn, int pRow) {
+        int b = blocAt(pColumn, pRow);
+        return b == NO_BLOC ? NONE : mStore.getType(b);
+    }
+
+    /**
+     * Get the bloc indexed in a cell.
+     *
+     * @param pColumn Column of the cell.
+     * @param pRow Row of the cell.
+     * @return Index of the bloc in the store or NO_BLOC (also outside the grid).
+     */
+    public int blocAt(int pColumn, int pRow) {
+        if(pColumn < 0 || pRow < 0 || pColumn >= mColumns || pRow >= mRows)
+            return NO_BLOC;
+        return mCells[pRow * mColumns + pColumn];
+    }
+
+    /**
+     * Get size of one cell
+     *
+     * @return Cell size.
+     */
+    @Override
+    public float getCellSize() {
+        return mCellSize;
+    }
+
+    /**
+     * Get blocs indexed by the grid
+     *
+     * @return Bloc store of the level.
+     * @see BlocStore
+     */
+    public BlocStore getStore() {
+        return mStore;
+    }
+
+    /**
+     * Get number of columns of the grid
+     *
+     * @return Number of columns.
+     */
+    @Override
+    public int getColumns() {
+        return mColumns;
+    }
+
+    /**
+     * Get number of rows of the grid
+     *
+     * @return Number of rows.
+     */
+    @Override
+    public int getRows() {
+        return mRows;
+    }
+
+    // Kolumna bloku, bloki leżą dokładnie na siatce
+    private int columnOf(int pIndex) {
+        return Math.round(mStore.getLeft(pIndex) / mCellSize);
+    }
+
+    // Wiersz bloku
+    private int rowOf(int pIndex) {
+        return Math.round(mStore.getTop(pIndex) / mCellSize);
+    }
+}
@@ -0,0 +1,68 @@
+package org.o7planning.kulkagra.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming parser of the level files (res/raw/level_*.txt).
+ * One line of the file is one row of the grid and one character is one cell:
+ * '.' empty, '#' hole, 'S' start, 'E' end.
+ * Bytes are read straight into the bloc store, no strings are created.
+ */
+public final class LevelParser {
+
+    // Znaki komórek
+    public static final byte CELL_EMPTY = '.';
+    public static final byte CELL_HOLE  = '#';
+    public static final byte CELL_START = 'S';
+    public static final byte CELL_END   = 'E';
+
+    private static final int BUFFER_SIZE = 1024;
+
+    private LevelParser() { }
+
+    /**
+     * Read a level file into a bloc store.
+     *
+     * @param pInput Stream of the level file, not closed by this method.
+     * @param pBlocSize Size of one bloc.
+     * @return Blocs of the level.
+     * @throws IOException If the stream cannot be read or contains an unknown cell.
+     * @see BlocStore
+     */
+    public static BlocStore parse(InputStream pInput, float pBlocSize) throws IOException {
+        BlocStore store = new BlocStore(256);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int x = 0;
+        int y = 0;
+        int read;
+
+        while((read = pInput.read(buffer)) > 0) {
+            for(int i = 0; i < read; i++) {
+                switch(buffer[i]) {
+                    case '\n':
+                        x = 0;
+                        y++;
+                        break;
+                    case '\r':
+                        break;
+                    case CELL_EMPTY:
+                        x++;
+                        break;
+                    case CELL_HOLE:
+                        store.add(BlocStore.TYPE_HOLE, x++, y, pBlocSize);
+                        break;
+                    case CELL_START:
+                        store.add(BlocStore.TYPE_START, x++, y, pBlocSize);
+                        break;
+                    case CELL_END:
+                        store.add(BlocStore.TYPE_END, x++, y, pBlocSize);
+                        break;
+                    default:
+                        throw new IOException("Unknown cell " + (char) buffer[i] + " at " + x + ", " + y);
+                }
+            }
+        }
+        return store;
+    }
+}
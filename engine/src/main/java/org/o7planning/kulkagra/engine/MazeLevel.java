@@ -0,0 +1,412 @@
+package org.o7planning.kulkagra.engine;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Procedural maze level of up to 999 x 999 cells (the grid is always odd).
+ * Rooms and walls are laid on a grid of (2 * width + 1) x (2 * height + 1) cells,
+ * a closed wall is a hole. The maze is split into chunks of CHUNK_ROOMS x CHUNK_ROOMS
+ * rooms, every chunk is a spanning tree of its own rooms generated from the seed,
+ * neighbour chunks are joined by one door placed by a hash of the seed and the edge.
+ * So any chunk can be built alone, at any time, and is always the same.
+ * Only a window of chunks around the ball is kept in memory, chunks out of the
+ * window are dropped and generated again when needed.
+ * Chunks are generated ahead of the ball by a background executor, one task at a time,
+ * so typeAt() usually only reads and does not allocate. If the executor falls behind,
+ * a missing chunk is generated on the calling thread: the walls never depend on timing,
+ * so a live run and its replay always see the same maze.
+ */
+public class MazeLevel implements CollisionMap {
+
+    // Największy labirynt w pokojach, siatka 2 * 499 + 1 = 999 komórek mieści się w 1000
+    public static final int MAX_SIZE = 499;
+
+    // Liczba pokoi na boku fragmentu
+    public static final int CHUNK_ROOMS = 16;
+
+    // Przejścia z pokoju
+    private static final byte OPEN_EAST     = 1;
+    private static final byte OPEN_SOUTH    = 2;
+
+    // Wymiary w pokojach
+    private final int mWidth;
+    private final int mHeight;
+    private final long mSeed;
+    private final float mCellSize;
+
+    // Okno fragmentów trzymanych w pamięci, fragment ma stałe miejsce w oknie
+    private final int mWindow;
+    private final AtomicReferenceArray<Chunk> mSlots;
+
+    // Generowanie w tle: fragment piłki (kolumna << 32 | wiersz) i jedno zadanie naraz
+    private final Executor mGenerator;
+    private volatile long mCenter;
+    private final AtomicBoolean mGenerating = new AtomicBoolean();
+    private final Runnable mGenerate = new Runnable() {
+        @Override
+        public void run() {
+            long center;
+            do {
+                center = mCenter;
+                generateAround((int) (center >> 32), (int) center);
+                mGenerating.set(false);
+                // Piłka przeszła dalej w trakcie generowania
+            } while(mCenter != center && mGenerating.compareAndSet(false, true));
+        }
+    };
+
+    // Pamięć robocza generatora, tylko pod blokadą load()
+    private final boolean[] mVisited = new boolean[CHUNK_ROOMS * CHUNK_ROOMS];
+    private final int[] mStack = new int[CHUNK_ROOMS * CHUNK_ROOMS];
+    private final int[] mNext = new int[4];
+    private final Random mRandom = new Random();
+
+    /**
+     * Rooms of one chunk. Never changed after generation,
+     * so it can be shared between threads without locking.
+     */
+    private static class Chunk {
+        final int mChunkX;
+        final int mChunkY;
+        final byte[] mRooms;
+
+        Chunk(int pChunkX, int pChunkY, byte[] pRooms) {
+            this.mChunkX = pChunkX;
+            this.mChunkY = pChunkY;
+            this.mRooms = pRooms;
+        }
+    }
+
+    /**
+     * Constructor of MazeLevel class
+     *
+     * @param pWidth Number of rooms on the X axis.
+     * @param pHeight Number of rooms on the Y axis.
+     * @param pSeed Seed of the maze, the same seed gives the same maze.
+     * @param pCellSize Size of one cell (and of one bloc).
+     * @param pResidentRadius Number of chunks kept around the chunk of the ball, at least 1.
+     * @param pGenerator Executor generating the chunks ahead of the ball.
+     */
+    public MazeLevel(int pWidth, int pHeight, long pSeed, float pCellSize, int pResidentRadius,
+                     Executor pGenerator) {
+        if(pWidth < 1 || pHeight < 1 || pWidth > MAX_SIZE || pHeight > MAX_SIZE)
+            throw new IllegalArgumentException("Maze size out of range: " + pWidth + "x" + pHeight);
+        // Sąsiednie fragmenty muszą być gotowe, zanim piłka do nich dojedzie
+        if(pResidentRadius < 1)
+            throw new IllegalArgumentException("Resident radius must be at least 1: " + pResidentRadius);
+
+        this.mWidth = pWidth;
+        this.mHeight = pHeight;
+        this.mSeed = pSeed;
+        this.mCellSize = pCellSize;
+        // Każde okno window x window fragmentów trafia w różne miejsca
+        this.mWindow = 2 * pResidentRadius + 1;
+        this.mSlots = new AtomicReferenceArray<>(mWindow * mWindow);
+        this.mGenerator = pGenerator;
+
+        // Okolica startu gotowa przed pierwszym krokiem
+        int startChunk = chunkOf(getStartX());
+        mCenter = (long) startChunk << 32 | startChunk;
+        generateAround(startChunk, startChunk);
+    }
+
+    /**
+     * Get type of the bloc in a cell. Nothing is allocated while the chunk is in memory,
+     * a missing chunk is generated first.
+     *
+     * @param pColumn Column of the cell.
+     * @param pRow Row of the cell.
+     * @return BlocStore.TYPE_HOLE for walls, BlocStore.TYPE_END for the exit or NONE.
+     */
+    @Override
+    public int typeAt(int pColumn, int pRow) {
+        if(pColumn < 0 || pRow < 0 || pColumn >= getColumns() || pRow >= getRows())
+            return NONE;
+
+        boolean evenColumn = (pColumn & 1) == 0;
+        boolean evenRow = (pRow & 1) == 0;
+
+        // Filary i brzeg
+        if((evenColumn && evenRow) || pColumn == 0 || pRow == 0
+                || pColumn == getColumns() - 1 || pRow == getRows() - 1)
+            return BlocStore.TYPE_HOLE;
+
+        // Pokój
+        if(!evenColumn && !evenRow) {
+            if(pColumn == getColumns() - 2 && pRow == getRows() - 2)
+                return BlocStore.TYPE_END;
+            return NONE;
+        }
+
+        // Ściana między pokojami
+        int roomX = (pColumn - 1) / 2;
+        int roomY = (pRow - 1) / 2;
+        boolean open = evenColumn ? isOpenEast(roomX, roomY) : isOpenSouth(roomX, roomY);
+        return open ? NONE : BlocStore.TYPE_HOLE;
+    }
+
+    /**
+     * Follow the ball. When it enters another chunk, the window around it is generated
+     * by the executor. Cheap when the chunk did not change, called every step.
+     * Simulation thread only.
+     *
+     * @param pX X position of the ball.
+     * @param pY Y position of the ball.
+     */
+    public void moveTo(float pX, float pY) {
+        long center = (long) chunkOf(pX) << 32 | chunkOf(pY);
+        if(center == mCenter)
+            return;
+        mCenter = center;
+        if(!mGenerating.compareAndSet(false, true))
+            return;
+        try {
+            mGenerator.execute(mGenerate);
+        } catch (RejectedExecutionException e) {
+            // Gra się zamyka, generator już nie przyjmuje zadań
+            mGenerating.set(false);
+        }
+    }
+
+    /**
+     * Generate every missing chunk of the window around a chunk, on the calling thread.
+     *
+     * @param pCenterX Chunk column in the middle of the window.
+     * @param pCenterY Chunk row in the middle of the window.
+     * @return Number of chunks generated.
+     */
+    public int generateAround(int pCenterX, int pCenterY) {
+        int radius = mWindow / 2;
+        int generated = 0;
+        for(int dy = -radius; dy <= radius; dy++) {
+            for(int dx = -radius; dx <= radius; dx++) {
+                int chunkX = pCenterX + dx;
+                int chunkY = pCenterY + dy;
+                if(chunkX < 0 || chunkY < 0 || chunkX > lastChunkX() || chunkY > lastChunkY())
+                    continue;
+                if(!isResident(chunkX, chunkY)) {
+                    load(chunkX, chunkY);
+                    generated++;
+                }
+            }
+        }
+        return generated;
+    }
+
+    /**
+     * Check if a chunk is in memory
+     *
+     * @param pChunkX Chunk column.
+     * @param pChunkY Chunk row.
+     * @return True if the chunk does not have to be generated.
+     */
+    public boolean isResident(int pChunkX, int pChunkY) {
+        Chunk chunk = mSlots.get(slotOf(pChunkX, pChunkY));
+        return chunk != null && chunk.mChunkX == pChunkX && chunk.mChunkY == pChunkY;
+    }
+
+    /**
+     * Get X position of the start room center
+     *
+     * @return X position.
+     */
+    public float getStartX() {
+        return 1.5f * mCellSize;
+    }
+
+    /**
+     * Get Y position of the start room center
+     *
+     * @return Y position.
+     */
+    public float getStartY() {
+        return 1.5f * mCellSize;
+    }
+
+    /**
+     * Get size of one cell
+     *
+     * @return Cell size.
+     */
+    @Override
+    public float getCellSize() {
+        return mCellSize;
+    }
+
+    /**
+     * Get number of columns of the maze
+     *
+     * @return Number of columns.
+     */
+    @Override
+    public int getColumns() {
+        return 2 * mWidth + 1;
+    }
+
+    /**
+     * Get number of rows of the maze
+     *
+     * @return Number of rows.
+     */
+    @Override
+    public int getRows() {
+        return 2 * mHeight + 1;
+    }
+
+    // Czy pokój ma przejście na wschód
+    private boolean isOpenEast(int pRoomX, int pRoomY) {
+        if(pRoomX >= mWidth - 1)
+            return false;
+        int chunkX = pRoomX / CHUNK_ROOMS;
+        int chunkY = pRoomY / CHUNK_ROOMS;
+        // Granica fragmentów, jedne drzwi na krawędź
+        if(pRoomX % CHUNK_ROOMS == CHUNK_ROOMS - 1)
+            return pRoomY % CHUNK_ROOMS == door(chunkX, chunkY, 0, roomsOf(chunkY, mHeight));
+        return (room(chunkX, chunkY, pRoomX, pRoomY) & OPEN_EAST) != 0;
+    }
+
+    // Czy pokój ma przejście na południe
+    private boolean isOpenSouth(int pRoomX, int pRoomY) {
+        if(pRoomY >= mHeight - 1)
+            return false;
+        int chunkX = pRoomX / CHUNK_ROOMS;
+        int chunkY = pRoomY / CHUNK_ROOMS;
+        if(pRoomY % CHUNK_ROOMS == CHUNK_ROOMS - 1)
+            return pRoomX % CHUNK_ROOMS == door(chunkX, chunkY, 1, roomsOf(chunkX, mWidth));
+        return (room(chunkX, chunkY, pRoomX, pRoomY) & OPEN_SOUTH) != 0;
+    }
+
+    // Przejścia pokoju, brakujący fragment budowany od razu (generator w tle nie nadążył)
+    private byte room(int pChunkX, int pChunkY, int pRoomX, int pRoomY) {
+        Chunk chunk = mSlots.get(slotOf(pChunkX, pChunkY));
+        if(chunk == null || chunk.mChunkX != pChunkX || chunk.mChunkY != pChunkY)
+            chunk = load(pChunkX, pChunkY);
+        return chunk.mRooms[(pRoomY % CHUNK_ROOMS) * CHUNK_ROOMS + pRoomX % CHUNK_ROOMS];
+    }
+
+    /**
+     * Generate a chunk and put it in its slot, unless another thread just did it.
+     * Generation uses shared working arrays, so it runs under the lock of the level.
+     *
+     * @param pChunkX Chunk column.
+     * @param pChunkY Chunk row.
+     * @return The chunk in memory.
+     */
+    private synchronized Chunk load(int pChunkX, int pChunkY) {
+        Chunk chunk = mSlots.get(slotOf(pChunkX, pChunkY));
+        if(chunk != null && chunk.mChunkX == pChunkX && chunk.mChunkY == pChunkY)
+            return chunk;
+        chunk = generate(pChunkX, pChunkY);
+        mSlots.set(slotOf(pChunkX, pChunkY), chunk);
+        return chunk;
+    }
+
+    /**
+     * Build the spanning tree of the rooms of one chunk with a randomized depth-first search.
+     * Reuses the working arrays of the generator, only the rooms of the chunk are allocated.
+     *
+     * @param pChunkX Chunk column.
+     * @param pChunkY Chunk row.
+     * @return New chunk.
+     */
+    private Chunk generate(int pChunkX, int pChunkY) {
+        int width = roomsOf(pChunkX, mWidth);
+        int height = roomsOf(pChunkY, mHeight);
+        byte[] rooms = new byte[CHUNK_ROOMS * CHUNK_ROOMS];
+        boolean[] visited = mVisited;
+        int[] stack = mStack;
+        int[] next = mNext;
+        Random random = mRandom;
+        Arrays.fill(visited, false);
+        random.setSeed(hash(pChunkX, pChunkY, 2));
+
+        int top = 0;
+        stack[top++] = 0;
+        visited[0] = true;
+        while(top > 0) {
+            int current = stack[top - 1];
+            int x = current % CHUNK_ROOMS;
+            int y = current / CHUNK_ROOMS;
+
+            // Nieodwiedzeni sąsiedzi
+            int count = 0;
+            if(x > 0 && !visited[current - 1])
+                next[count++] = current - 1;
+            if(x < width - 1 && !visited[current + 1])
+                next[count++] = current + 1;
+            if(y > 0 && !visited[current - CHUNK_ROOMS])
+                next[count++] = current - CHUNK_ROOMS;
+            if(y < height - 1 && !visited[current + CHUNK_ROOMS])
+                next[count++] = current + CHUNK_ROOMS;
+
+            if(count == 0) {
+                top--;
+                continue;
+            }
+
+            // Otwórz ścianę do wylosowanego sąsiada
+            int chosen = next[random.nextInt(count)];
+            if(chosen == current + 1)
+                rooms[current] |= OPEN_EAST;
+            else if(chosen == current - 1)
+                rooms[chosen] |= OPEN_EAST;
+            else if(chosen == current + CHUNK_ROOMS)
+                rooms[current] |= OPEN_SOUTH;
+            else
+                rooms[chosen] |= OPEN_SOUTH;
+
+            visited[chosen] = true;
+            stack[top++] = chosen;
+        }
+        return new Chunk(pChunkX, pChunkY, rooms);
+    }
+
+    /**
+     * Position of the door on the east (pSide = 0) or south (pSide = 1) edge of a chunk.
+     *
+     * @param pChunkX Chunk column.
+     * @param pChunkY Chunk row.
+     * @param pSide Edge of the chunk.
+     * @param pLength Number of rooms along the edge.
+     * @return Room offset of the door along the edge.
+     */
+    private int door(int pChunkX, int pChunkY, int pSide, int pLength) {
+        return (int) ((hash(pChunkX, pChunkY, pSide) >>> 1) % pLength);
+    }
+
+    // Liczba pokoi fragmentu na jednej osi, ostatni fragment może być niepełny
+    private static int roomsOf(int pChunk, int pRooms) {
+        return Math.min(CHUNK_ROOMS, pRooms - pChunk * CHUNK_ROOMS);
+    }
+
+    // Miejsce fragmentu w oknie
+    private int slotOf(int pChunkX, int pChunkY) {
+        return (pChunkY % mWindow) * mWindow + pChunkX % mWindow;
+    }
+
+    // Fragment pod pozycją w poziomie
+    private int chunkOf(float pPosition) {
+        return (int) (pPosition / mCellSize) / (2 * CHUNK_ROOMS);
+    }
+
+    private int lastChunkX() {
+        return (mWidth - 1) / CHUNK_ROOMS;
+    }
+
+    private int lastChunkY() {
+        return (mHeight - 1) / CHUNK_ROOMS;
+    }
+
+    // Mieszanie ziarna z położeniem (SplitMix64)
+    private long hash(int pChunkX, int pChunkY, int pSalt) {
+        long z = mSeed + 0x9E3779B97F4A7C15L * (((long) pChunkX << 32 | pChunkY & 0xFFFFFFFFL) * 3 + pSalt + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,76 @@
+package org.o7planning.kulkagra.engine;
+
+/**
+ * One euro filter (Casiez, Roussel, Vogel 2012): a low-pass filter whose cutoff
+ * grows with the speed of the signal. A still phone gives a stable ball,
+ * a quick tilt passes almost without lag.
+ * Time between samples comes from the sensor timestamps.
+ */
+public class OneEuroFilter implements TiltFilter {
+
+    private static final float NANOS_PER_SECOND = 1e9f;
+
+    // Parametry filtra
+    private final float mMinCutoff;
+    private final float mBeta;
+    private final float mDerivativeCutoff;
+
+    // Stan filtra dla osi X i Y
+    private final float[] mValue = new float[2];
+    private final float[] mDerivative = new float[2];
+    private long mLastTimestamp = -1;
+
+    /**
+     * Constructor of OneEuroFilter class
+     *
+     * @param pMinCutoff Cutoff frequency of a still signal in Hz, lower means less jitter.
+     * @param pBeta Growth of the cutoff with speed, higher means less lag.
+     * @param pDerivativeCutoff Cutoff frequency of the speed estimate in Hz.
+     */
+    public OneEuroFilter(float pMinCutoff, float pBeta, float pDerivativeCutoff) {
+        this.mMinCutoff = pMinCutoff;
+        this.mBeta = pBeta;
+        this.mDerivativeCutoff = pDerivativeCutoff;
+    }
+
+    @Override
+    public void reset() {
+        mLastTimestamp = -1;
+    }
+
+    @Override
+    public void apply(long pTimestamp, float pX, float pY, float[] pOut) {
+        // Pierwsza próbka (albo zegar cofnięty) tylko ustawia stan
+        if(mLastTimestamp < 0 || pTimestamp <= mLastTimestamp) {
+            mLastTimestamp = pTimestamp;
+            mValue[0] = pX;
+            mValue[1] = pY;
+            mDerivative[0] = 0;
+            mDerivative[1] = 0;
+            pOut[0] = pX;
+            pOut[1] = pY;
+            return;
+        }
+
+        float dt = (pTimestamp - mLastTimestamp) / NANOS_PER_SECOND;
+        mLastTimestamp = pTimestamp;
+        pOut[0] = filter(0, pX, dt);
+        pOut[1] = filter(1, pY, dt);
+    }
+
+    // Jedna oś
+    private float filter(int pAxis, float pValue, float pDt) {
+        float derivative = (pValue - mValue[pAxis]) / pDt;
+        mDerivative[pAxis] += alpha(mDerivativeCutoff, pDt) * (derivative - mDerivative[pAxis]);
+
+        float cutoff = mMinCutoff + mBeta * Math.abs(mDerivative[pAxis]);
+        mValue[pAxis] += alpha(cutoff, pDt) * (pValue - mValue[pAxis]);
+        return mValue[pAxis];
+    }
+
+    // Współczynnik wygładzania dla częstotliwości odcięcia
+    private static float alpha(float pCutoff, float pDt) {
+        float tau = 1.0f / (2.0f * (float) Math.PI * pCutoff);
+        return 1.0f / (1.0f + tau / pDt);
+    }
+}
@@ -0,0 +1,163 @@
+package org.o7planning.kulkagra.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the hot paths shown by the performance overlay.
+ * Every counter has a single writer (simulation thread or drawing thread),
+ * so it is bumped with an ordered store instead of a locked increment.
+ * Readers take snapshots and compute rates from the differences.
+ */
+public class PerfCounters {
+
+    // Fizyka: kroki i bloki sprawdzone przez kolizje
+    private final AtomicLong mSteps         = new AtomicLong();
+    private final AtomicLong mBlocsTested   = new AtomicLong();
+
+    // Rysowanie: klatki, ich czas i alokacje
+    private final AtomicLong mFrames        = new AtomicLong();
+    private final AtomicLong mFrameNanos    = new AtomicLong();
+    private final AtomicLong mAllocations   = new AtomicLong();
+
+    // Sensory: próbki przechyłu, zdarzenia światła i pola magnetycznego (odebrane i użyte)
+    private final AtomicLong mSamples           = new AtomicLong();
+    private final AtomicLong mAmbientEvents     = new AtomicLong();
+    private final AtomicLong mAmbientUpdates    = new AtomicLong();
+
+    // Zamówiony okres próbkowania przechyłu, 0 gdy sensor jest odłączony
+    private final AtomicLong mSamplingPeriod    = new AtomicLong();
+
+    /**
+     * Count one physics step. Called only from the simulation thread.
+     *
+     * @param pBlocsTested Number of blocs tested by the collision of the step.
+     */
+    public void onStep(int pBlocsTested) {
+        mSteps.lazySet(mSteps.get() + 1);
+        mBlocsTested.lazySet(mBlocsTested.get() + pBlocsTested);
+    }
+
+    /**
+     * Count one drawn frame. Called only from the drawing thread.
+     *
+     * @param pNanos Time spent on the frame.
+     * @param pAllocations Number of objects allocated during the frame.
+     */
+    public void onFrame(long pNanos, int pAllocations) {
+        mFrames.lazySet(mFrames.get() + 1);
+        mFrameNanos.lazySet(mFrameNanos.get() + pNanos);
+        mAllocations.lazySet(mAllocations.get() + pAllocations);
+    }
+
+    /**
+     * Count one tilt sample. Called only from the simulation thread.
+     */
+    public void onSample() {
+        mSamples.lazySet(mSamples.get() + 1);
+    }
+
+    /**
+     * Count one light or magnetic event. Called only from the UI thread.
+     */
+    public void onAmbientEvent() {
+        mAmbientEvents.lazySet(mAmbientEvents.get() + 1);
+    }
+
+    /**
+     * Count one change of the colours made from coalesced light and magnetic events.
+     * Called only from the UI thread.
+     */
+    public void onAmbientUpdate() {
+        mAmbientUpdates.lazySet(mAmbientUpdates.get() + 1);
+    }
+
+    /**
+     * Set the sampling period requested from the tilt sensor.
+     *
+     * @param pPeriodUs Period in microseconds, 0 when the sensor is not registered.
+     */
+    public void setSamplingPeriod(int pPeriodUs) {
+        mSamplingPeriod.lazySet(pPeriodUs);
+    }
+
+    /**
+     * Get number of physics steps
+     *
+     * @return Steps since start.
+     */
+    public long getSteps() {
+        return mSteps.get();
+    }
+
+    /**
+     * Get number of blocs tested by the collisions
+     *
+     * @return Blocs since start.
+     */
+    public long getBlocsTested() {
+        return mBlocsTested.get();
+    }
+
+    /**
+     * Get number of drawn frames
+     *
+     * @return Frames since start.
+     */
+    public long getFrames() {
+        return mFrames.get();
+    }
+
+    /**
+     * Get time spent on drawing frames
+     *
+     * @return Nanoseconds since start.
+     */
+    public long getFrameNanos() {
+        return mFrameNanos.get();
+    }
+
+    /**
+     * Get number of objects allocated while drawing
+     *
+     * @return Allocations since start.
+     */
+    public long getAllocations() {
+        return mAllocations.get();
+    }
+
+    /**
+     * Get number of tilt samples
+     *
+     * @return Samples since start.
+     */
+    public long getSamples() {
+        return mSamples.get();
+    }
+
+    /**
+     * Get number of light and magnetic events
+     *
+     * @return Events since start.
+     */
+    public long getAmbientEvents() {
+        return mAmbientEvents.get();
+    }
+
+    /**
+     * Get number of light and magnetic events which changed the colours
+     *
+     * @return Updates since start.
+     */
+    public long getAmbientUpdates() {
+        return mAmbientUpdates.get();
+    }
+
+    /**
+     * Get the sampling period requested from the tilt sensor
+     *
+     * @return Period in microseconds, 0 when the sensor is not registered.
+     */
+    public long getSamplingPeriod() {
+        return mSamplingPeriod.get();
+    }
+}
@@ -0,0 +1,130 @@
+package org.o7planning.kulkagra.engine;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a replay written by ReplayRecorder and hands its rounds and samples to a listener.
+ * A record cut at the end of the file (crash during a write) ends the replay.
+ *
+ * @see ReplayRecorder
+ */
+public class ReplayReader {
+
+    /**
+     * Receiver of the replayed records.
+     */
+    public interface Listener {
+
+        /**
+         * Start of a round.
+         *
+         * @param pLevelId Id of the level of the round.
+         * @return False to stop reading.
+         */
+        boolean onRound(int pLevelId);
+
+        /**
+         * One recorded sample.
+         *
+         * @param pTimestamp Sensor timestamp in nanoseconds.
+         * @param pX Tilt on the X axis.
+         * @param pY Tilt on the Y axis.
+         * @return False to stop reading.
+         */
+        boolean onSample(long pTimestamp, float pX, float pY);
+
+        /**
+         * End of a pause: the simulation clock starts again from the next sample.
+         *
+         * @return False to stop reading.
+         */
+        boolean onContinue();
+    }
+
+    private ReplayReader() { }
+
+    /**
+     * Read a whole replay.
+     *
+     * @param pInput Stream of the replay.
+     * @param pListener Receiver of the records.
+     * @return Number of samples read.
+     * @throws IOException If the stream cannot be read or is not a replay.
+     */
+    public static long read(InputStream pInput, Listener pListener) throws IOException {
+        InputStream input = new BufferedInputStream(pInput);
+        for(byte b : ReplayRecorder.MAGIC) {
+            if(input.read() != b)
+                throw new IOException("Not a replay");
+        }
+
+        long samples = 0;
+        long timestamp = 0;
+        long delta = 0;
+        int x = 0;
+        int y = 0;
+        try {
+            while(true) {
+                long tag = readVarint(input, true);
+                if(tag < 0)
+                    break;
+
+                int kind = (int) (tag & ReplayRecorder.KIND_MASK);
+                if(kind == ReplayRecorder.KIND_ROUND) {
+                    timestamp = 0;
+                    delta = 0;
+                    x = 0;
+                    y = 0;
+                    if(!pListener.onRound((int) unzigzag(tag >>> ReplayRecorder.KIND_BITS)))
+                        break;
+                    continue;
+                }
+                if(kind == ReplayRecorder.KIND_CONTINUE) {
+                    if(!pListener.onContinue())
+                        break;
+                    continue;
+                }
+                if(kind != ReplayRecorder.KIND_SAMPLE)
+                    throw new IOException("Unknown record " + kind);
+
+                delta += unzigzag(tag >>> ReplayRecorder.KIND_BITS);
+                timestamp += delta;
+                x ^= (int) readVarint(input, false);
+                y ^= (int) readVarint(input, false);
+                samples++;
+                if(!pListener.onSample(timestamp, Float.intBitsToFloat(x), Float.intBitsToFloat(y)))
+                    break;
+            }
+        } catch (EOFException e) {
+            // Ucięty ostatni rekord
+        }
+        return samples;
+    }
+
+    // Liczba zapisana po 7 bitów, -1 na końcu strumienia przed pierwszym bajtem
+    private static long readVarint(InputStream pInput, boolean pEndAllowed) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while(true) {
+            int b = pInput.read();
+            if(b < 0) {
+                if(shift == 0 && pEndAllowed)
+                    return -1;
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                return value;
+            shift += 7;
+            if(shift > 63)
+                throw new IOException("Malformed varint");
+        }
+    }
+
+    private static long unzigzag(long pValue) {
+        return (pValue >>> 1) ^ -(pValue & 1);
+    }
+}
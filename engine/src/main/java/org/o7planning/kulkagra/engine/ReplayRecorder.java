@@ -0,0 +1,201 @@
+package org.o7planning.kulkagra.engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Compact recording of the tilt fed to the physics, for replays.
+ * Every sample is encoded into a preallocated batch buffer: timestamp as a varint change of
+ * the delta (samples come at an almost fixed rate, so it is near zero),
+ * tilt as a varint of the XOR with the previous float bits (slowly changing values
+ * share sign, exponent and high mantissa bits, so the XOR is small).
+ * Continuing after a pause is recorded too, so a replay drops the time of the pause
+ * at the same sample as the recorded run.
+ * Full batches are written to the stream by an executor, the recording thread never does I/O.
+ * If the writer falls behind and no buffer is free, samples are dropped and counted.
+ *
+ * @see ReplayReader
+ */
+public class ReplayRecorder {
+
+    // Nagłówek pliku
+    static final byte[] MAGIC = { 'K', 'R', 'P', '1' };
+
+    // Rodzaje rekordów, zapisane w dwóch najniższych bitach znacznika
+    static final int KIND_BITS      = 2;
+    static final int KIND_MASK      = (1 << KIND_BITS) - 1;
+    static final int KIND_SAMPLE    = 0;
+    static final int KIND_ROUND     = 1;
+    static final int KIND_CONTINUE  = 2;
+
+    // Najdłuższy rekord: znacznik (10 bajtów) i dwie liczby (po 5 bajtów)
+    private static final int MAX_RECORD = 20;
+
+    private final OutputStream mOut;
+    private final Executor mExecutor;
+    private final ArrayBlockingQueue<byte[]> mFree;
+
+    // Bieżąca paczka
+    private byte[] mBatch;
+    private int mLength = 0;
+
+    // Poprzednia próbka
+    private long mLastTimestamp = 0;
+    private long mLastDelta = 0;
+    private int mLastX = 0;
+    private int mLastY = 0;
+
+    private long mDropped = 0;
+    private boolean mClosed = false;
+
+    /**
+     * Constructor of ReplayRecorder class
+     *
+     * @param pOut Stream of the replay, usually a file opened for appending.
+     * @param pExecutor Executor doing the writes.
+     * @param pBatchBytes Size of one batch.
+     * @param pBatches Number of preallocated batches.
+     */
+    public ReplayRecorder(OutputStream pOut, Executor pExecutor, int pBatchBytes, int pBatches) {
+        this.mOut = pOut;
+        this.mExecutor = pExecutor;
+        this.mFree = new ArrayBlockingQueue<>(pBatches);
+        for(int i = 0; i < pBatches; i++)
+            mFree.offer(new byte[Math.max(pBatchBytes, MAX_RECORD)]);
+
+        mBatch = mFree.poll();
+        System.arraycopy(MAGIC, 0, mBatch, 0, MAGIC.length);
+        mLength = MAGIC.length;
+    }
+
+    /**
+     * Mark the start of a round. Samples that follow belong to it.
+     *
+     * @param pLevelId Id of the level of the round.
+     */
+    public synchronized void startRound(int pLevelId) {
+        if(!reserve())
+            return;
+        mLength = writeVarint(mBatch, mLength, (zigzag(pLevelId) << KIND_BITS) | KIND_ROUND);
+        mLastTimestamp = 0;
+        mLastDelta = 0;
+        mLastX = 0;
+        mLastY = 0;
+    }
+
+    /**
+     * Mark the end of a pause. The simulation clock starts again
+     * from the next sample, the time between the samples is not simulated.
+     */
+    public synchronized void continueRound() {
+        if(!reserve())
+            return;
+        mLength = writeVarint(mBatch, mLength, KIND_CONTINUE);
+    }
+
+    /**
+     * Record one sample. Does not allocate and does no I/O.
+     *
+     * @param pTimestamp Sensor timestamp in nanoseconds.
+     * @param pX Tilt on the X axis.
+     * @param pY Tilt on the Y axis.
+     */
+    public synchronized void record(long pTimestamp, float pX, float pY) {
+        if(!reserve())
+            return;
+        int x = Float.floatToRawIntBits(pX);
+        int y = Float.floatToRawIntBits(pY);
+        long delta = pTimestamp - mLastTimestamp;
+        int length = writeVarint(mBatch, mLength, (zigzag(delta - mLastDelta) << KIND_BITS) | KIND_SAMPLE);
+        length = writeVarint(mBatch, length, (x ^ mLastX) & 0xFFFFFFFFL);
+        mLength = writeVarint(mBatch, length, (y ^ mLastY) & 0xFFFFFFFFL);
+        mLastTimestamp = pTimestamp;
+        mLastDelta = delta;
+        mLastX = x;
+        mLastY = y;
+    }
+
+    /**
+     * Write the last batch and close the stream. Later samples are ignored.
+     */
+    public synchronized void close() {
+        if(mClosed)
+            return;
+        mClosed = true;
+        if(mBatch != null)
+            submit(mBatch, mLength);
+        mBatch = null;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mOut.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /**
+     * Get number of samples lost because the writer was too slow
+     *
+     * @return Number of dropped records.
+     */
+    public synchronized long getDropped() {
+        return mDropped;
+    }
+
+    // Miejsce na jeden rekord, pełna paczka idzie do zapisu
+    private boolean reserve() {
+        if(mClosed)
+            return false;
+        if(mBatch != null && mLength + MAX_RECORD <= mBatch.length)
+            return true;
+
+        if(mBatch != null) {
+            submit(mBatch, mLength);
+            mBatch = null;
+        }
+        mBatch = mFree.poll();
+        mLength = 0;
+        if(mBatch == null) {
+            // Rekord pominięty, poprzednia próbka zostaje odniesieniem delt
+            mDropped++;
+            return false;
+        }
+        return true;
+    }
+
+    // Zapis paczki w tle, bufor wraca do puli
+    private void submit(final byte[] pBatch, final int pLength) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mOut.write(pBatch, 0, pLength);
+                    mOut.flush();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    mFree.offer(pBatch);
+                }
+            }
+        });
+    }
+
+    static long zigzag(long pValue) {
+        return (pValue << 1) ^ (pValue >> 63);
+    }
+
+    static int writeVarint(byte[] pBuffer, int pOffset, long pValue) {
+        while((pValue & ~0x7FL) != 0) {
+            pBuffer[pOffset++] = (byte) ((pValue & 0x7F) | 0x80);
+            pValue >>>= 7;
+        }
+        pBuffer[pOffset++] = (byte) pValue;
+        return pOffset;
+    }
+}
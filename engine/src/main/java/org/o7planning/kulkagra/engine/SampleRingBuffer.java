@@ -0,0 +1,115 @@
+package org.o7planning.kulkagra.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated single-producer single-consumer queue of tilt samples.
+ * The sensor thread offers samples, the simulation thread drains all of them
+ * in one pass. No locks and no allocation after construction.
+ */
+public class SampleRingBuffer {
+
+    /**
+     * Receiver of drained samples.
+     */
+    public interface SampleSink {
+        /**
+         * Called for every sample, oldest first.
+         *
+         * @param pTimestamp Sensor timestamp in nanoseconds.
+         * @param pX Tilt on the X axis.
+         * @param pY Tilt on the Y axis.
+         */
+        void onSample(long pTimestamp, float pX, float pY);
+    }
+
+    private final int mMask;
+    private final long[] mTimestamps;
+    private final float[] mX;
+    private final float[] mY;
+
+    // Następna próbka do odczytu (konsument) i do zapisu (producent)
+    private final AtomicLong mHead = new AtomicLong(0);
+    private final AtomicLong mTail = new AtomicLong(0);
+
+    // Próbki odrzucone przy pełnym buforze
+    private volatile long mDropped = 0;
+
+    /**
+     * Constructor of SampleRingBuffer class
+     *
+     * @param pCapacity Number of samples, rounded up to a power of two.
+     */
+    public SampleRingBuffer(int pCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(pCapacity, 2) - 1) << 1;
+        mMask = capacity - 1;
+        mTimestamps = new long[capacity];
+        mX = new float[capacity];
+        mY = new float[capacity];
+    }
+
+    /**
+     * Add a sample, producer thread only.
+     *
+     * @param pTimestamp Sensor timestamp in nanoseconds.
+     * @param pX Tilt on the X axis.
+     * @param pY Tilt on the Y axis.
+     * @return False if the buffer is full and the sample was dropped.
+     */
+    public boolean offer(long pTimestamp, float pX, float pY) {
+        long tail = mTail.get();
+        if(tail - mHead.get() > mMask) {
+            mDropped++;
+            return false;
+        }
+
+        int i = (int) tail & mMask;
+        mTimestamps[i] = pTimestamp;
+        mX[i] = pX;
+        mY[i] = pY;
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Pass all available samples to the sink, consumer thread only.
+     *
+     * @param pSink Receiver of the samples.
+     * @return Number of drained samples.
+     */
+    public int drain(SampleSink pSink) {
+        long head = mHead.get();
+        long tail = mTail.get();
+        for(long n = head; n < tail; n++) {
+            int i = (int) n & mMask;
+            pSink.onSample(mTimestamps[i], mX[i], mY[i]);
+        }
+        mHead.lazySet(tail);
+        return (int) (tail - head);
+    }
+
+    /**
+     * Forget all available samples, consumer thread only.
+     */
+    public void clear() {
+        mHead.lazySet(mTail.get());
+    }
+
+    /**
+     * Check if all offered samples have been drained or cleared
+     *
+     * @return True if the consumer has nothing to read.
+     */
+    public boolean isEmpty() {
+        return mHead.get() == mTail.get();
+    }
+
+    /**
+     * Get number of samples dropped because the buffer was full
+     *
+     * @return Dropped samples.
+     */
+    public long getDropped() {
+        return mDropped;
+    }
+}
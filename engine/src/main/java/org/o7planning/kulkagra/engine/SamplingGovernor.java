@@ -0,0 +1,83 @@
+package org.o7planning.kulkagra.engine;
+
+/**
+ * Chooses the sampling period of the tilt sensor from the speed of the ball.
+ * A fast ball is sampled more often, a ball at rest only often enough to notice
+ * the next tilt. Faster sampling is chosen at once, slower only after the ball
+ * stayed slower for a while, so the sensor is not registered again on every bounce.
+ * Updated by the simulation thread, the period may be read from any thread.
+ */
+public class SamplingGovernor {
+
+    // Okresy próbkowania w mikrosekundach
+    public static final int PERIOD_REST_US      = 50000;
+    public static final int PERIOD_NORMAL_US    = 20000;
+    public static final int PERIOD_FAST_US      = 10000;
+
+    // Progi prędkości piłki (odległość w jednym kroku)
+    private final float mRestSpeed;
+    private final float mFastSpeed;
+
+    // Jak długo piłka musi zwalniać, zanim próbkowanie zwolni
+    private final long mHoldNanos;
+
+    private volatile int mPeriod = PERIOD_NORMAL_US;
+
+    // Czas próbki, od której piłka jest wolniejsza (-1 gdy nie jest)
+    private long mSlowerSince = -1;
+
+    /**
+     * Constructor of SamplingGovernor class
+     *
+     * @param pRestSpeed Speed up to which the ball is at rest.
+     * @param pFastSpeed Speed from which the ball moves fast.
+     * @param pHoldNanos Time the ball has to stay slower before sampling slows down.
+     */
+    public SamplingGovernor(float pRestSpeed, float pFastSpeed, long pHoldNanos) {
+        this.mRestSpeed = pRestSpeed;
+        this.mFastSpeed = pFastSpeed;
+        this.mHoldNanos = pHoldNanos;
+    }
+
+    /**
+     * Take the speed of the ball after a sample.
+     *
+     * @param pTimestamp Sensor timestamp of the sample in nanoseconds.
+     * @param pSpeed Speed of the ball.
+     * @return True if the period changed and the sensor has to be registered again.
+     */
+    public boolean update(long pTimestamp, float pSpeed) {
+        int target = pSpeed >= mFastSpeed ? PERIOD_FAST_US
+                : pSpeed <= mRestSpeed ? PERIOD_REST_US : PERIOD_NORMAL_US;
+        if(target == mPeriod) {
+            mSlowerSince = -1;
+            return false;
+        }
+
+        // Szybciej od razu, piłka nie może czekać na próbki
+        if(target < mPeriod) {
+            mPeriod = target;
+            mSlowerSince = -1;
+            return true;
+        }
+
+        if(mSlowerSince < 0) {
+            mSlowerSince = pTimestamp;
+            return false;
+        }
+        if(pTimestamp - mSlowerSince < mHoldNanos)
+            return false;
+        mPeriod = target;
+        mSlowerSince = -1;
+        return true;
+    }
+
+    /**
+     * Get the chosen sampling period
+     *
+     * @return Period in microseconds.
+     */
+    public int getPeriodUs() {
+        return mPeriod;
+    }
+}
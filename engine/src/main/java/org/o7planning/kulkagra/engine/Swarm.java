@@ -0,0 +1,285 @@
+package org.o7planning.kulkagra.engine;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Many balls moved by the same tilt on the same level ("swarm" mode).
+ * State of the balls is kept in primitive arrays and every step is split
+ * across cores with fork-join. Tasks are built once and reused,
+ * so a step does not allocate.
+ */
+public class Swarm {
+
+    // Stany piłek
+    public static final byte ALIVE      = 0;
+    public static final byte FELL       = 1;
+    public static final byte FINISHED   = 2;
+
+    // Liczba piłek liczona przez jedno zadanie
+    private static final int LEAF_SIZE = 256;
+
+    private final int mCount;
+    private final float mRadius;
+    private final long mSeed;
+
+    // Stan piłek
+    private final float[] mX;
+    private final float[] mY;
+    private final float[] mSpeedX;
+    private final float[] mSpeedY;
+    private final byte[] mState;
+
+    // Poziom i obszar ruchu
+    private volatile CollisionMap mMap = null;
+    private volatile boolean mSpawnPending = false;
+    private int mWidth = -1;
+    private int mHeight = -1;
+
+    // Przechył w bieżącym kroku
+    private float mTiltX;
+    private float mTiltY;
+
+    private final StepTask mRoot;
+    private final TripleBuffer<Frame> mFrames;
+
+    /**
+     * Positions of the alive balls, published for the renderer.
+     * Points are stored as x, y pairs ready for Canvas.drawPoints.
+     */
+    public static class Frame {
+        private final float[] mPoints;
+        private int mCount = 0;
+
+        Frame(int pCapacity) {
+            mPoints = new float[pCapacity * 2];
+        }
+
+        /**
+         * Get positions of the balls
+         *
+         * @return Array of x, y pairs.
+         */
+        public float[] getPoints() {
+            return mPoints;
+        }
+
+        /**
+         * Get number of balls in the frame
+         *
+         * @return Number of x, y pairs used in getPoints().
+         */
+        public int getCount() {
+            return mCount;
+        }
+    }
+
+    /**
+     * Constructor of Swarm class
+     *
+     * @param pCount Number of balls.
+     * @param pRadius Radius of one ball.
+     * @param pSeed Seed of the start positions.
+     */
+    public Swarm(int pCount, float pRadius, long pSeed) {
+        mCount = pCount;
+        mRadius = pRadius;
+        mSeed = pSeed;
+        mX = new float[pCount];
+        mY = new float[pCount];
+        mSpeedX = new float[pCount];
+        mSpeedY = new float[pCount];
+        mState = new byte[pCount];
+        mRoot = new StepTask(0, pCount);
+        mFrames = new TripleBuffer<>(new Frame(pCount), new Frame(pCount), new Frame(pCount));
+    }
+
+    /**
+     * Set the level, balls are spread over it before the next step.
+     *
+     * @param pMap Cells of the level.
+     * @see CollisionMap
+     */
+    public void setLevel(CollisionMap pMap) {
+        mMap = pMap;
+        mSpawnPending = true;
+    }
+
+    /**
+     * Move all balls by one step. Simulation thread only.
+     *
+     * @param pTiltX Tilt on the X axis.
+     * @param pTiltY Tilt on the Y axis.
+     * @param pWidth Width of the area.
+     * @param pHeight Height of the area.
+     */
+    public void step(float pTiltX, float pTiltY, int pWidth, int pHeight) {
+        if(mMap == null || pWidth <= 0 || pHeight <= 0)
+            return;
+
+        mWidth = pWidth;
+        mHeight = pHeight;
+        if(mSpawnPending) {
+            mSpawnPending = false;
+            spawn();
+        }
+
+        mTiltX = pTiltX;
+        mTiltY = pTiltY;
+        mRoot.reinitialize();
+        ForkJoinPool.commonPool().invoke(mRoot);
+        publish();
+    }
+
+    /**
+     * Get positions published for the renderer
+     *
+     * @return Buffer of swarm frames.
+     * @see Frame
+     */
+    public TripleBuffer<Frame> getFrames() {
+        return mFrames;
+    }
+
+    /**
+     * Get number of balls
+     *
+     * @return Number of balls.
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Get state of a ball
+     *
+     * @param pIndex Index of the ball.
+     * @return ALIVE, FELL or FINISHED.
+     */
+    public byte getState(int pIndex) {
+        return mState[pIndex];
+    }
+
+    // Rozłóż piłki losowo w wolnych miejscach poziomu
+    private void spawn() {
+        Random random = new Random(mSeed);
+        CollisionMap map = mMap;
+        float span = 2 * mRadius;
+        for(int i = 0; i < mCount; i++) {
+            float x;
+            float y;
+            int tries = 0;
+            do {
+                x = mRadius + random.nextFloat() * (mWidth - span);
+                y = mRadius + random.nextFloat() * (mHeight - span);
+            } while(SweptCollision.hitType(SweptCollision.sweep(map, x, y, 0, 0, mRadius)) != CollisionMap.NONE
+                    && ++tries < 32);
+
+            mX[i] = x;
+            mY[i] = y;
+            mSpeedX[i] = 0;
+            mSpeedY[i] = 0;
+            mState[i] = tries < 32 ? ALIVE : FELL;
+        }
+    }
+
+    // Krok piłek z zakresu [pFrom, pTo)
+    private void stepRange(int pFrom, int pTo) {
+        CollisionMap map = mMap;
+        float r = mRadius;
+        for(int i = pFrom; i < pTo; i++) {
+            if(mState[i] != ALIVE)
+                continue;
+
+            // Te same zasady co BallPhysics.step
+            float speedX = BallPhysics.accelerate(mSpeedX[i], mTiltX);
+            float speedY = BallPhysics.accelerate(mSpeedY[i], mTiltY);
+            float x0 = mX[i];
+            float y0 = mY[i];
+            float x = x0 + speedY;
+            float y = y0 + speedX;
+
+            if(x < r) {
+                x = r;
+                speedY = -speedY / BallPhysics.REBOUND;
+            } else if(x > mWidth - r) {
+                x = mWidth - r;
+                speedY = -speedY / BallPhysics.REBOUND;
+            }
+            if(y < r) {
+                y = r;
+                speedX = -speedX / BallPhysics.REBOUND;
+            } else if(y > mHeight - r) {
+                y = mHeight - r;
+                speedX = -speedX / BallPhysics.REBOUND;
+            }
+
+            long sweep = SweptCollision.sweep(map, x0, y0, x - x0, y - y0, r);
+            int hit = SweptCollision.hitType(sweep);
+            if(hit != CollisionMap.NONE) {
+                float t = SweptCollision.hitTime(sweep);
+                x = x0 + (x - x0) * t;
+                y = y0 + (y - y0) * t;
+                mState[i] = hit == BlocStore.TYPE_END ? FINISHED : FELL;
+            }
+
+            mX[i] = x;
+            mY[i] = y;
+            mSpeedX[i] = speedX;
+            mSpeedY[i] = speedY;
+        }
+    }
+
+    // Skopiuj pozycje żywych piłek dla wątku rysowania
+    private void publish() {
+        Frame frame = mFrames.getBack();
+        float[] points = frame.mPoints;
+        int count = 0;
+        for(int i = 0; i < mCount; i++) {
+            if(mState[i] != ALIVE)
+                continue;
+            points[count * 2] = mX[i];
+            points[count * 2 + 1] = mY[i];
+            count++;
+        }
+        frame.mCount = count;
+        mFrames.publish();
+    }
+
+    /**
+     * Step of a range of balls, split in two until LEAF_SIZE.
+     */
+    private class StepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int mFrom;
+        private final int mTo;
+        private final StepTask mLeft;
+        private final StepTask mRight;
+
+        StepTask(int pFrom, int pTo) {
+            mFrom = pFrom;
+            mTo = pTo;
+            if(pTo - pFrom > LEAF_SIZE) {
+                int middle = (pFrom + pTo) >>> 1;
+                mLeft = new StepTask(pFrom, middle);
+                mRight = new StepTask(middle, pTo);
+            } else {
+                mLeft = null;
+                mRight = null;
+            }
+        }
+
+        @Override
+        protected void compute() {
+            if(mLeft == null) {
+                stepRange(mFrom, mTo);
+                return;
+            }
+            mLeft.reinitialize();
+            mRight.reinitialize();
+            invokeAll(mLeft, mRight);
+        }
+    }
+}
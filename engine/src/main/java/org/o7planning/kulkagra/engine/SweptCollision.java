@@ -0,0 +1,192 @@
+package org.o7planning.kulkagra.engine;
+
+/**
+ * Continuous collision of a moving circle with an axis-aligned rectangle.
+ * The circle hits the rectangle when its center enters the rectangle grown
+ * by the radius (two grown rectangles plus four corner circles).
+ */
+public final class SweptCollision {
+
+    // Brak kolizji w tym ruchu
+    public static final float NO_IMPACT = Float.POSITIVE_INFINITY;
+
+    private SweptCollision() { }
+
+    /**
+     * Sweep a moving circle against the cells of a map it passes through.
+     * The result is packed into a long so that nothing is allocated and the
+     * method can be called from many threads, read it with hitType and hitTime.
+     *
+     * @param pMap Level to collide with.
+     * @param pX Start X position of the circle center.
+     * @param pY Start Y position of the circle center.
+     * @param pDx Movement on the X axis.
+     * @param pDy Movement on the Y axis.
+     * @param pRadius Radius of the circle.
+     * @return Packed type of the first bloc hit and its time of impact.
+     * @see CollisionMap
+     */
+    public static long sweep(CollisionMap pMap, float pX, float pY, float pDx, float pDy, float pRadius) {
+        float size = pMap.getCellSize();
+        int firstColumn = (int) Math.floor((Math.min(pX, pX + pDx) - pRadius) / size);
+        int lastColumn  = (int) Math.floor((Math.max(pX, pX + pDx) + pRadius) / size);
+        int firstRow    = (int) Math.floor((Math.min(pY, pY + pDy) - pRadius) / size);
+        int lastRow     = (int) Math.floor((Math.max(pY, pY + pDy) + pRadius) / size);
+
+        int hit = CollisionMap.NONE;
+        float impact = NO_IMPACT;
+        for(int row = firstRow; row <= lastRow; row++) {
+            for(int column = firstColumn; column <= lastColumn; column++) {
+                int type = pMap.typeAt(column, row);
+                if(type == CollisionMap.NONE)
+                    continue;
+
+                float t = timeOfImpact(pX, pY, pDx, pDy, pRadius,
+                        column * size, row * size, (column + 1) * size, (row + 1) * size);
+                if(t < impact) {
+                    impact = t;
+                    hit = type;
+                }
+            }
+        }
+        return ((long) hit << 32) | (Float.floatToRawIntBits(impact) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Number of blocs a sweep tests for an impact, for statistics.
+     * Empty cells covered by the movement are skipped by the sweep and are not counted.
+     *
+     * @param pMap Level to collide with.
+     * @param pX Start X position of the circle center.
+     * @param pY Start Y position of the circle center.
+     * @param pDx Movement on the X axis.
+     * @param pDy Movement on the Y axis.
+     * @param pRadius Radius of the circle.
+     * @return Number of blocs tested by the same sweep.
+     * @see #sweep(CollisionMap, float, float, float, float, float)
+     */
+    public static int blocCount(CollisionMap pMap, float pX, float pY, float pDx, float pDy, float pRadius) {
+        float size = pMap.getCellSize();
+        int firstColumn = (int) Math.floor((Math.min(pX, pX + pDx) - pRadius) / size);
+        int lastColumn  = (int) Math.floor((Math.max(pX, pX + pDx) + pRadius) / size);
+        int firstRow    = (int) Math.floor((Math.min(pY, pY + pDy) - pRadius) / size);
+        int lastRow     = (int) Math.floor((Math.max(pY, pY + pDy) + pRadius) / size);
+
+        int count = 0;
+        for(int row = firstRow; row <= lastRow; row++) {
+            for(int column = firstColumn; column <= lastColumn; column++) {
+                if(pMap.typeAt(column, row) != CollisionMap.NONE)
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the bloc type from a sweep result
+     *
+     * @param pSweep Result of sweep().
+     * @return Type of the bloc or CollisionMap.NONE.
+     */
+    public static int hitType(long pSweep) {
+        return (int) (pSweep >> 32);
+    }
+
+    /**
+     * Get the time of impact from a sweep result
+     *
+     * @param pSweep Result of sweep().
+     * @return Fraction of the movement in [0, 1], or NO_IMPACT.
+     */
+    public static float hitTime(long pSweep) {
+        return Float.intBitsToFloat((int) pSweep);
+    }
+
+    /**
+     * Time of impact of a circle moving from (pX, pY) by (pDx, pDy).
+     * Touching edges do not count, like RectF.intersects.
+     *
+     * @param pX Start X position of the circle center.
+     * @param pY Start Y position of the circle center.
+     * @param pDx Movement on the X axis.
+     * @param pDy Movement on the Y axis.
+     * @param pRadius Radius of the circle.
+     * @param pLeft Left side of the rectangle.
+     * @param pTop Top side of the rectangle.
+     * @param pRight Right side of the rectangle.
+     * @param pBottom Bottom side of the rectangle.
+     * @return Fraction of the movement in [0, 1] at the first contact, or NO_IMPACT.
+     */
+    public static float timeOfImpact(float pX, float pY, float pDx, float pDy, float pRadius,
+                                     float pLeft, float pTop, float pRight, float pBottom) {
+        // Koło już nachodzi na prostokąt
+        float nearestX = Math.max(pLeft, Math.min(pX, pRight));
+        float nearestY = Math.max(pTop, Math.min(pY, pBottom));
+        float ox = pX - nearestX;
+        float oy = pY - nearestY;
+        if(ox * ox + oy * oy < pRadius * pRadius)
+            return 0;
+
+        if(pDx == 0 && pDy == 0)
+            return NO_IMPACT;
+
+        float t = NO_IMPACT;
+        t = Math.min(t, rayRectangle(pX, pY, pDx, pDy, pLeft - pRadius, pTop, pRight + pRadius, pBottom));
+        t = Math.min(t, rayRectangle(pX, pY, pDx, pDy, pLeft, pTop - pRadius, pRight, pBottom + pRadius));
+        t = Math.min(t, rayCircle(pX, pY, pDx, pDy, pLeft, pTop, pRadius));
+        t = Math.min(t, rayCircle(pX, pY, pDx, pDy, pRight, pTop, pRadius));
+        t = Math.min(t, rayCircle(pX, pY, pDx, pDy, pLeft, pBottom, pRadius));
+        t = Math.min(t, rayCircle(pX, pY, pDx, pDy, pRight, pBottom, pRadius));
+        return t;
+    }
+
+    // Wejście odcinka w prostokąt (metoda płyt)
+    private static float rayRectangle(float pX, float pY, float pDx, float pDy,
+                                      float pLeft, float pTop, float pRight, float pBottom) {
+        float enter = 0;
+        float exit = 1;
+
+        if(pDx == 0) {
+            if(pX <= pLeft || pX >= pRight)
+                return NO_IMPACT;
+        } else {
+            float t1 = (pLeft - pX) / pDx;
+            float t2 = (pRight - pX) / pDx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+
+        if(pDy == 0) {
+            if(pY <= pTop || pY >= pBottom)
+                return NO_IMPACT;
+        } else {
+            float t1 = (pTop - pY) / pDy;
+            float t2 = (pBottom - pY) / pDy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+
+        return enter < exit ? enter : NO_IMPACT;
+    }
+
+    // Wejście odcinka w koło narożnika
+    private static float rayCircle(float pX, float pY, float pDx, float pDy,
+                                   float pCx, float pCy, float pRadius) {
+        float mx = pX - pCx;
+        float my = pY - pCy;
+        float a = pDx * pDx + pDy * pDy;
+        float b = mx * pDx + my * pDy;
+        float c = mx * mx + my * my - pRadius * pRadius;
+
+        // Odsuwa się od narożnika
+        if(b >= 0)
+            return NO_IMPACT;
+
+        float discriminant = b * b - a * c;
+        if(discriminant <= 0)
+            return NO_IMPACT;
+
+        float t = (-b - (float) Math.sqrt(discriminant)) / a;
+        return t >= 0 && t <= 1 ? t : NO_IMPACT;
+    }
+}
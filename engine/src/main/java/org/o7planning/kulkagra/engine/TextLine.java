@@ -0,0 +1,124 @@
+package org.o7planning.kulkagra.engine;
+
+/**
+ * Line of text built in a preallocated char array, for text drawn on every frame.
+ * Numbers are written without String.valueOf or formatting, so nothing is allocated.
+ * Text longer than the capacity is cut.
+ */
+public class TextLine {
+
+    private final char[] mChars;
+    private int mLength = 0;
+
+    /**
+     * Constructor of TextLine class
+     *
+     * @param pCapacity Maximum number of characters.
+     */
+    public TextLine(int pCapacity) {
+        this.mChars = new char[pCapacity];
+    }
+
+    /**
+     * Remove all characters.
+     *
+     * @return This line.
+     */
+    public TextLine clear() {
+        mLength = 0;
+        return this;
+    }
+
+    /**
+     * Append a text.
+     *
+     * @param pText Text to append, usually a constant.
+     * @return This line.
+     */
+    public TextLine append(String pText) {
+        for(int i = 0; i < pText.length(); i++)
+            append(pText.charAt(i));
+        return this;
+    }
+
+    /**
+     * Append an integer number.
+     *
+     * @param pValue Number to append.
+     * @return This line.
+     */
+    public TextLine append(long pValue) {
+        // Cyfry liczone z wartości ujemnej, -Long.MIN_VALUE się nie mieści
+        long negative = pValue;
+        if(pValue < 0)
+            append('-');
+        else
+            negative = -pValue;
+
+        int digits = 1;
+        for(long rest = negative / 10; rest != 0; rest /= 10)
+            digits++;
+
+        // Cyfry od końca na swoje miejsca, te poza pojemnością są obcięte jak w tekście
+        int start = mLength;
+        for(int i = start + digits - 1; i >= start; i--) {
+            if(i < mChars.length)
+                mChars[i] = (char) ('0' - negative % 10);
+            negative /= 10;
+        }
+        mLength = Math.min(mChars.length, start + digits);
+        return this;
+    }
+
+    /**
+     * Append a number with one decimal digit.
+     *
+     * @param pValue Number to append.
+     * @return This line.
+     */
+    public TextLine appendTenths(float pValue) {
+        long tenths = Math.round(pValue * 10);
+        if(tenths < 0) {
+            append('-');
+            tenths = -tenths;
+        }
+        append(tenths / 10);
+        append('.');
+        return append((char) ('0' + tenths % 10));
+    }
+
+    /**
+     * Append a character.
+     *
+     * @param pChar Character to append.
+     * @return This line.
+     */
+    public TextLine append(char pChar) {
+        if(mLength < mChars.length)
+            mChars[mLength++] = pChar;
+        return this;
+    }
+
+    /**
+     * Get characters of the line
+     *
+     * @return Array holding the line, only the first length() characters are used.
+     */
+    public char[] getChars() {
+        return mChars;
+    }
+
+    /**
+     * Get length of the line
+     *
+     * @return Number of characters.
+     */
+    public int length() {
+        return mLength;
+    }
+
+    @Override
+    public String toString() {
+        return new String(mChars, 0, mLength);
+    }
+}
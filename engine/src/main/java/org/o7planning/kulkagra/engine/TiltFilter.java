@@ -0,0 +1,26 @@
+package org.o7planning.kulkagra.engine;
+
+/**
+ * Smoothing of the tilt samples before they move the ball.
+ * A filter keeps its own state and must not allocate, it is called for every sample.
+ *
+ * @see TiltInput
+ * @see OneEuroFilter
+ */
+public interface TiltFilter {
+
+    /**
+     * Forget the previous samples, the next sample starts the filter again.
+     */
+    void reset();
+
+    /**
+     * Filter one sample.
+     *
+     * @param pTimestamp Sensor timestamp in nanoseconds.
+     * @param pX Tilt on the X axis.
+     * @param pY Tilt on the Y axis.
+     * @param pOut Filtered tilt, X at index 0 and Y at index 1.
+     */
+    void apply(long pTimestamp, float pX, float pY, float[] pOut);
+}
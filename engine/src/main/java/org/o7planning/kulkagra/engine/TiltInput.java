@@ -0,0 +1,107 @@
+package org.o7planning.kulkagra.engine;
+
+/**
+ * Input stage of the tilt control: calibration offset, then an optional filter.
+ * Used only by the thread consuming the samples, nothing is allocated per sample.
+ *
+ * @see TiltFilter
+ */
+public class TiltInput {
+
+    // Ziemskie przyspieszenie, jak SensorManager.GRAVITY_EARTH
+    public static final float GRAVITY = 9.80665f;
+
+    private TiltFilter mFilter;
+
+    // Przechył uznany za poziom
+    private float mOffsetX = 0;
+    private float mOffsetY = 0;
+    private volatile boolean mCalibrationPending = false;
+
+    // Wynik ostatniej próbki
+    private final float[] mTilt = new float[2];
+
+    /**
+     * Constructor of TiltInput class
+     *
+     * @param pFilter Filter of the samples, null to pass them through.
+     */
+    public TiltInput(TiltFilter pFilter) {
+        this.mFilter = pFilter;
+    }
+
+    /**
+     * Take the next sample as the neutral tilt. Can be called from any thread.
+     */
+    public void calibrate() {
+        mCalibrationPending = true;
+    }
+
+    /**
+     * Forget the filter state, for example at the start of a round.
+     */
+    public void reset() {
+        if(mFilter != null)
+            mFilter.reset();
+    }
+
+    /**
+     * Process one sample, the result is read with getX() and getY().
+     *
+     * @param pTimestamp Sensor timestamp in nanoseconds.
+     * @param pX Tilt on the X axis.
+     * @param pY Tilt on the Y axis.
+     */
+    public void process(long pTimestamp, float pX, float pY) {
+        if(mCalibrationPending) {
+            mCalibrationPending = false;
+            mOffsetX = pX;
+            mOffsetY = pY;
+            reset();
+        }
+
+        float x = pX - mOffsetX;
+        float y = pY - mOffsetY;
+        if(mFilter == null) {
+            mTilt[0] = x;
+            mTilt[1] = y;
+        } else {
+            mFilter.apply(pTimestamp, x, y, mTilt);
+        }
+    }
+
+    /**
+     * Convert a game rotation vector into the tilt an accelerometer would read:
+     * gravity seen in the coordinates of the device. The result has no linear
+     * acceleration and no accelerometer noise.
+     *
+     * @param pX Rotation vector X component.
+     * @param pY Rotation vector Y component.
+     * @param pZ Rotation vector Z component.
+     * @param pW Rotation vector scalar component.
+     * @param pOut Tilt, X at index 0 and Y at index 1.
+     */
+    public static void gravityOf(float pX, float pY, float pZ, float pW, float[] pOut) {
+        // Trzeci wiersz macierzy obrotu z kwaternionu
+        pOut[0] = GRAVITY * 2 * (pX * pZ - pW * pY);
+        pOut[1] = GRAVITY * 2 * (pY * pZ + pW * pX);
+    }
+
+    /**
+     * Get filtered tilt on the X axis
+     *
+     * @return Tilt of the last sample.
+     */
+    public float getX() {
+        return mTilt[0];
+    }
+
+    /**
+     * Get filtered tilt on the Y axis
+     *
+     * @return Tilt of the last sample.
+     */
+    public float getY() {
+        return mTilt[1];
+    }
+}
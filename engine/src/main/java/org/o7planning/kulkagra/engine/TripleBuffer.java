@@ -0,0 +1,80 @@
+package org.o7planning.kulkagra.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free handoff of a state from one writer thread to one reader thread.
+ * The writer fills the back slot and publishes it, the reader takes the latest
+ * published slot. Neither side ever waits and the three slots are reused,
+ * so nothing is allocated after construction.
+ *
+ * @param <T> Type of the state held in the slots.
+ */
+public class TripleBuffer<T> {
+
+    // Flaga nowego stanu w środkowym slocie
+    private static final int NEW_STATE = 4;
+    private static final int INDEX_MASK = 3;
+
+    private final Object[] mSlots;
+
+    // Środkowy slot wymieniany między wątkami
+    private final AtomicInteger mMiddle = new AtomicInteger(1);
+
+    // Slot zapisywany przez pisarza
+    private int mBack = 0;
+
+    // Slot czytany przez czytelnika
+    private int mFront = 2;
+
+    /**
+     * Constructor of TripleBuffer class
+     *
+     * @param pFirst First slot.
+     * @param pSecond Second slot.
+     * @param pThird Third slot.
+     */
+    public TripleBuffer(T pFirst, T pSecond, T pThird) {
+        mSlots = new Object[] { pFirst, pSecond, pThird };
+    }
+
+    /**
+     * Get the slot to fill, writer thread only.
+     *
+     * @return Slot not visible to the reader.
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) mSlots[mBack];
+    }
+
+    /**
+     * Publish the filled back slot, writer thread only.
+     */
+    public void publish() {
+        mBack = mMiddle.getAndSet(mBack | NEW_STATE) & INDEX_MASK;
+    }
+
+    /**
+     * Take the latest published slot if there is one, reader thread only.
+     *
+     * @return True if the front slot has changed.
+     */
+    public boolean update() {
+        if((mMiddle.get() & NEW_STATE) == 0)
+            return false;
+
+        mFront = mMiddle.getAndSet(mFront) & INDEX_MASK;
+        return true;
+    }
+
+    /**
+     * Get the slot read by the reader, reader thread only.
+     *
+     * @return Latest state taken by update().
+     */
+    @SuppressWarnings("unchecked")
+    public T getFront() {
+        return (T) mSlots[mFront];
+    }
+}
@@ -0,0 +1,63 @@
+package org.o7planning.kulkagra.engine;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Best times written in batches and read back, also after a torn write.
+ */
+public class BestTimesStoreTest {
+
+    @Test
+    public void bestTimes_surviveTornRecord() throws Exception {
+        File file = File.createTempFile("times", ".bin");
+        file.deleteOnExit();
+
+        BestTimesStore store = new BestTimesStore(file, DirectExecutor.INSTANCE);
+        assertTrue(store.submit(1, 5000));
+        assertFalse(store.submit(1, 6000));
+        store.saveProgress(3);
+
+        // Przerwany zapis w środku pliku
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write(new byte[] { 0, 0, 0, 1, 0, 0 });
+        out.close();
+
+        BestTimesStore writer = new BestTimesStore(file, DirectExecutor.INSTANCE);
+        writer.load();
+        assertTrue(writer.submit(2, 7000));
+        assertTrue(writer.submit(1, 4000));
+
+        BestTimesStore loaded = new BestTimesStore(file, DirectExecutor.INSTANCE);
+        loaded.load();
+        assertEquals(4000, loaded.getBest(1));
+        assertEquals(7000, loaded.getBest(2));
+        assertEquals(-1, loaded.getBest(-50));
+        assertEquals(3, loaded.getProgress(2));
+    }
+
+    @Test
+    public void largeFile_keepsOnlyLatestRecords() throws Exception {
+        File file = File.createTempFile("times", ".bin");
+        file.deleteOnExit();
+
+        // Coraz lepsze czasy, każdy to nowy rekord w pliku
+        BestTimesStore store = new BestTimesStore(file, DirectExecutor.INSTANCE);
+        for(int i = 0; i < 1000; i++) {
+            store.submit(i % 3, 100000 - i);
+            store.saveProgress(i % 5);
+        }
+        assertTrue("size " + file.length(), file.length() <= BestTimesStore.COMPACT_BYTES);
+
+        BestTimesStore loaded = new BestTimesStore(file, DirectExecutor.INSTANCE);
+        loaded.load();
+        assertEquals(100000 - 999, loaded.getBest(0));
+        assertEquals(100000 - 997, loaded.getBest(1));
+        assertEquals(100000 - 998, loaded.getBest(2));
+        assertEquals(4, loaded.getProgress(0));
+    }
+}
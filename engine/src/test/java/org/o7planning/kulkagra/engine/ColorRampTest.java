@@ -0,0 +1,48 @@
+package org.o7planning.kulkagra.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Gradient lookup table and the fade along it.
+ */
+public class ColorRampTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void ramp_interpolatesStopsAndClampsValues() {
+        ColorRamp ramp = new ColorRamp(new float[] {0, 100, 400},
+                new int[] {0xFF000000, 0xFFFF0000, 0xFF0000FF});
+
+        assertEquals(0, ramp.indexOf(-50));
+        assertEquals(ColorRamp.SIZE - 1, ramp.indexOf(1000));
+        assertEquals(0, ramp.indexOf(Float.NaN));
+        assertEquals(0xFF000000, ramp.colorAt(0));
+        assertEquals(0xFF0000FF, ramp.colorAt(ColorRamp.SIZE - 1));
+
+        // Połowa pierwszego odcinka: połowa czerwieni
+        int red = (ramp.colorAt(ramp.indexOf(50)) >> 16) & 0xFF;
+        assertTrue("red " + red, red > 120 && red < 136);
+        assertEquals(0xFF7F7F7F, ColorRamp.blend(0xFF000000, 0xFFFFFFFF, 128));
+    }
+
+    @Test
+    public void fade_reachesTargetGradually() {
+        ColorRamp ramp = new ColorRamp(new float[] {0, 255}, new int[] {0xFF000000, 0xFFFFFFFF});
+        ColorFade fade = new ColorFade(ramp, 100 * MS, 0);
+        assertEquals(0xFF000000, fade.getColor());
+        assertFalse(fade.update(0));
+
+        fade.setValue(255);
+        assertTrue(fade.update(16 * MS));
+        int blue = fade.getColor() & 0xFF;
+        assertTrue("blue " + blue, blue > 0 && blue < 128);
+
+        for(long t = 32; t < 2000; t += 16)
+            fade.update(t * MS);
+        assertEquals(0xFFFFFFFF, fade.getColor());
+        assertFalse(fade.update(2000 * MS));
+    }
+}
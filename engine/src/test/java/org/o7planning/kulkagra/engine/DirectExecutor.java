@@ -0,0 +1,19 @@
+package org.o7planning.kulkagra.engine;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executor running every task at once on the calling thread,
+ * so a test sees background writes and generation before the call returns.
+ */
+final class DirectExecutor implements Executor {
+
+    static final DirectExecutor INSTANCE = new DirectExecutor();
+
+    private DirectExecutor() { }
+
+    @Override
+    public void execute(Runnable pTask) {
+        pTask.run();
+    }
+}
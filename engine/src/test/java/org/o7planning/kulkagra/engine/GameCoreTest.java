@@ -0,0 +1,68 @@
+package org.o7planning.kulkagra.engine;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Plays a small level without Android: tilt the ball into a bloc and check the hit.
+ */
+public class GameCoreTest {
+
+    private static final float BLOC_SIZE = 20.0f;
+
+    private static final String LEVEL =
+            "#######\n" +
+            "#S...E#\n" +
+            "#.....#\n" +
+            "#######\n";
+
+    @Test
+    public void tiltRight_reachesEnd() throws IOException {
+        GameCore core = buildCore();
+
+        // Oś Y akcelerometru porusza piłkę w poziomie
+        int hit = GameCore.NO_HIT;
+        for(int i = 0; i < 1000 && hit == GameCore.NO_HIT; i++)
+            hit = core.step(0.0f, 2.0f);
+
+        assertEquals(BlocStore.TYPE_END, hit);
+    }
+
+    @Test
+    public void tiltUp_fallsIntoHole() throws IOException {
+        GameCore core = buildCore();
+
+        int hit = GameCore.NO_HIT;
+        for(int i = 0; i < 1000 && hit == GameCore.NO_HIT; i++)
+            hit = core.step(-2.0f, 0.0f);
+
+        assertEquals(BlocStore.TYPE_HOLE, hit);
+    }
+
+    @Test
+    public void unknownSize_doesNotMove() throws IOException {
+        BallPhysics ball = new BallPhysics(BLOC_SIZE / 2);
+        ball.setStart(30.0f, 30.0f);
+        GameCore core = new GameCore(ball);
+
+        assertEquals(GameCore.NO_HIT, core.step(5.0f, 5.0f));
+        assertEquals(30.0f, ball.getX(), 0.0f);
+        assertEquals(30.0f, ball.getY(), 0.0f);
+    }
+
+    private static GameCore buildCore() throws IOException {
+        BlocStore store = LevelParser.parse(new ByteArrayInputStream(LEVEL.getBytes("US-ASCII")), BLOC_SIZE);
+        BallPhysics ball = new BallPhysics(BLOC_SIZE / 2);
+        ball.setWidth((int) (BLOC_SIZE * 7));
+        ball.setHeight((int) (BLOC_SIZE * 4));
+        ball.setStart(BLOC_SIZE * 1.5f, BLOC_SIZE * 1.5f);
+
+        GameCore core = new GameCore(ball);
+        core.setMap(new LevelGrid(store, BLOC_SIZE));
+        return core;
+    }
+}
@@ -0,0 +1,31 @@
+package org.o7planning.kulkagra.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Percentiles of the fixed bucket latency histogram.
+ */
+public class LatencyHistogramTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void percentiles_followRecordedLatencies() {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        for(int i = 0; i < 99; i++)
+            histogram.record(10 * MS + 300000L);
+        // Dłuższe niż ostatni kubełek trafia do niego, maksimum jest dokładne
+        histogram.record(500 * MS);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(11 * MS, histogram.percentile(50));
+        assertEquals(11 * MS, histogram.percentile(99));
+        assertEquals(500 * MS, histogram.percentile(100));
+        assertEquals(500 * MS, histogram.getMax());
+
+        histogram.reset();
+        assertEquals(0, histogram.percentile(50));
+    }
+}
@@ -0,0 +1,116 @@
+package org.o7planning.kulkagra.engine;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the physics step and its collision pass never allocate.
+ */
+public class LevelGridAllocationTest {
+
+    private static final float BLOC_SIZE = 20.0f;
+    private static final int STEPS = 100000;
+
+    @Test
+    public void collisionPass_doesNotAllocate() {
+        LevelGrid grid = buildLevel();
+
+        // Rozgrzewka, żeby JIT nie liczył się do pomiaru
+        runSteps(grid);
+
+        long calibration = allocatedBytes();
+        calibration = allocatedBytes() - calibration;
+
+        long before = allocatedBytes();
+        int hits = runSteps(grid);
+        long allocated = allocatedBytes() - before - calibration;
+
+        assertTrue(hits > 0);
+        assertEquals(0, allocated);
+    }
+
+    @Test
+    public void physicsStep_doesNotAllocate() {
+        BallPhysics ball = new BallPhysics(BLOC_SIZE / 2);
+        ball.setWidth((int) BLOC_SIZE * 26);
+        ball.setHeight((int) BLOC_SIZE * 14);
+        ball.setStart(BLOC_SIZE * 2.5f, BLOC_SIZE * 2.5f);
+        GameCore core = new GameCore(ball);
+        core.setMap(buildLevel());
+
+        runCore(core);
+
+        long calibration = allocatedBytes();
+        calibration = allocatedBytes() - calibration;
+
+        long before = allocatedBytes();
+        runCore(core);
+        long allocated = allocatedBytes() - before - calibration;
+
+        assertEquals(0, allocated);
+    }
+
+    @Test
+    public void sweep_findsOnlyTouchedBloc() {
+        LevelGrid grid = buildLevel();
+        float r = BLOC_SIZE / 2;
+
+        long sweep = SweptCollision.sweep(grid, BLOC_SIZE * 1.5f, BLOC_SIZE * 1.5f, -1.0f, 0, r);
+        assertEquals(BlocStore.TYPE_HOLE, SweptCollision.hitType(sweep));
+
+        // Styk krawędzi nie jest kolizją
+        sweep = SweptCollision.sweep(grid, BLOC_SIZE * 1.5f, BLOC_SIZE * 1.5f, 0, 0, r);
+        assertEquals(CollisionMap.NONE, SweptCollision.hitType(sweep));
+
+        sweep = SweptCollision.sweep(grid, BLOC_SIZE * 10.5f, BLOC_SIZE * 6.5f, BLOC_SIZE * 1.5f, 0, r);
+        assertEquals(BlocStore.TYPE_END, SweptCollision.hitType(sweep));
+    }
+
+    // Ramka z dziur i meta w środku, jak buildLabyrinthe0
+    private static LevelGrid buildLevel() {
+        BlocStore store = new BlocStore(16);
+        for(int x = 0; x < 26; x++) {
+            store.add(BlocStore.TYPE_HOLE, x, 0, BLOC_SIZE);
+            store.add(BlocStore.TYPE_HOLE, x, 13, BLOC_SIZE);
+        }
+        for(int y = 1; y < 13; y++) {
+            store.add(BlocStore.TYPE_HOLE, 0, y, BLOC_SIZE);
+            store.add(BlocStore.TYPE_HOLE, 25, y, BLOC_SIZE);
+        }
+        store.add(BlocStore.TYPE_START, 2, 2, BLOC_SIZE);
+        store.add(BlocStore.TYPE_END, 12, 6, BLOC_SIZE);
+        return new LevelGrid(store, BLOC_SIZE);
+    }
+
+    // Piłka jeździ po całym poziomie, ruch kroku sprawdzany jak w GameCore.step
+    private static int runSteps(LevelGrid grid) {
+        int hits = 0;
+        float x = BLOC_SIZE;
+        float y = BLOC_SIZE;
+        for(int i = 0; i < STEPS; i++) {
+            x = (x + 3.0f) % (BLOC_SIZE * 26);
+            y = (y + 1.5f) % (BLOC_SIZE * 14);
+            long sweep = SweptCollision.sweep(grid, x, y, 3.0f, 1.5f, BLOC_SIZE / 2);
+            if(SweptCollision.hitType(sweep) != CollisionMap.NONE)
+                hits++;
+        }
+        return hits;
+    }
+
+    // Piłka toczy się w kółko, po trafieniu wraca na start
+    private static void runCore(GameCore core) {
+        for(int i = 0; i < STEPS; i++) {
+            float tilt = (i / 500) % 2 == 0 ? 3.0f : -3.0f;
+            if(core.step(tilt, -tilt) != GameCore.NO_HIT)
+                core.getBall().reset();
+        }
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
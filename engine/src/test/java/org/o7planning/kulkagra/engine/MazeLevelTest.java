@@ -0,0 +1,78 @@
+package org.o7planning.kulkagra.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Maze built chunk by chunk: the same seed gives the same walls
+ * whatever was dropped from memory, and the end can always be reached.
+ */
+public class MazeLevelTest {
+
+    private static final int SIZE = 50;
+
+    @Test
+    public void evictedChunks_areGeneratedAgainTheSame() {
+        // Najmniejsze okno wymusza ciągłe wyrzucanie i ponowne budowanie
+        MazeLevel small = new MazeLevel(SIZE, SIZE, 7L, 10, 1, DirectExecutor.INSTANCE);
+        MazeLevel large = new MazeLevel(SIZE, SIZE, 7L, 10, 4, DirectExecutor.INSTANCE);
+        for(int row = 0; row < small.getRows(); row++) {
+            for(int column = 0; column < small.getColumns(); column++) {
+                small.moveTo((column + 0.5f) * 10, (row + 0.5f) * 10);
+                assertEquals(large.typeAt(column, row), small.typeAt(column, row));
+            }
+        }
+    }
+
+    @Test
+    public void lateGenerator_doesNotChangeWalls() {
+        // Generator w tle nigdy nie zdąży
+        MazeLevel late = new MazeLevel(SIZE, SIZE, 7L, 10, 1, new Executor() {
+            @Override
+            public void execute(Runnable pTask) {
+            }
+        });
+        MazeLevel ready = new MazeLevel(SIZE, SIZE, 7L, 10, 4, DirectExecutor.INSTANCE);
+        int chunkCells = 2 * MazeLevel.CHUNK_ROOMS;
+        late.moveTo(3 * chunkCells * 10, 3 * chunkCells * 10);
+        assertFalse(late.isResident(3, 3));
+
+        // Brakujący fragment budowany od razu, ściany jak w gotowym labiryncie
+        for(int row = 3 * chunkCells + 1; row < 4 * chunkCells; row++) {
+            for(int column = 3 * chunkCells + 1; column < 4 * chunkCells; column++)
+                assertEquals(ready.typeAt(column, row), late.typeAt(column, row));
+        }
+        assertTrue(late.isResident(3, 3));
+    }
+
+    @Test
+    public void end_isReachableFromStart() {
+        MazeLevel maze = new MazeLevel(SIZE, SIZE, 42L, 10, 4, DirectExecutor.INSTANCE);
+        int columns = maze.getColumns();
+        boolean[] seen = new boolean[columns * maze.getRows()];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(columns + 1);
+        seen[columns + 1] = true;
+
+        while(!queue.isEmpty()) {
+            int cell = queue.poll();
+            int column = cell % columns;
+            int row = cell / columns;
+            if(maze.typeAt(column, row) == BlocStore.TYPE_END)
+                return;
+
+            int[] next = { cell - 1, cell + 1, cell - columns, cell + columns };
+            for(int n : next) {
+                if(!seen[n] && maze.typeAt(n % columns, n / columns) != BlocStore.TYPE_HOLE) {
+                    seen[n] = true;
+                    queue.add(n);
+                }
+            }
+        }
+        fail("End of the maze is not reachable");
+    }
+}
@@ -0,0 +1,78 @@
+package org.o7planning.kulkagra.engine;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replay written in batches and read back sample by sample.
+ */
+public class ReplayTest {
+
+    private static final long STEP = 20000000L;
+
+    @Test
+    public void recordedSamples_areReadBackExactly() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReplayRecorder recorder = new ReplayRecorder(out, DirectExecutor.INSTANCE, 256, 2);
+
+        final float[] xs = new float[1000];
+        recorder.startRound(2);
+        for(int i = 0; i < xs.length; i++) {
+            xs[i] = (float) Math.sin(i / 50.0) * 3;
+            recorder.record(1000000000L + i * STEP, xs[i], -xs[i] / 2);
+            // Pauza w połowie rundy
+            if(i == 499)
+                recorder.continueRound();
+        }
+        recorder.startRound(-400);
+        recorder.record(5L, 1.0f, 2.0f);
+        recorder.close();
+
+        // Delty i XOR mieszczą się w około połowie surowych 16 bajtów na próbkę
+        assertTrue("size " + out.size(), out.size() < xs.length * 10);
+
+        final List<Integer> rounds = new ArrayList<>();
+        final List<Integer> continues = new ArrayList<>();
+        final int[] index = { 0 };
+        long samples = ReplayReader.read(new ByteArrayInputStream(out.toByteArray()), new ReplayReader.Listener() {
+            @Override
+            public boolean onRound(int pLevelId) {
+                rounds.add(pLevelId);
+                return true;
+            }
+
+            @Override
+            public boolean onSample(long pTimestamp, float pX, float pY) {
+                int i = index[0]++;
+                if(i < xs.length) {
+                    assertEquals(1000000000L + i * STEP, pTimestamp);
+                    assertEquals(xs[i], pX, 0.0f);
+                    assertEquals(-xs[i] / 2, pY, 0.0f);
+                } else {
+                    assertEquals(5L, pTimestamp);
+                    assertEquals(2.0f, pY, 0.0f);
+                }
+                return true;
+            }
+
+            @Override
+            public boolean onContinue() {
+                continues.add(index[0]);
+                return true;
+            }
+        });
+
+        assertEquals(xs.length + 1, samples);
+        assertEquals(2, (int) rounds.get(0));
+        assertEquals(-400, (int) rounds.get(1));
+        assertEquals(1, continues.size());
+        assertEquals(500, (int) continues.get(0));
+        assertEquals(0, recorder.getDropped());
+    }
+}
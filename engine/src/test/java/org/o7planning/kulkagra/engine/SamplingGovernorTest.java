@@ -0,0 +1,35 @@
+package org.o7planning.kulkagra.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sampling period chosen from the speed of the ball.
+ */
+public class SamplingGovernorTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void period_speedsUpAtOnceAndSlowsDownAfterHold() {
+        SamplingGovernor governor = new SamplingGovernor(0.1f, 2.0f, 1000 * MS);
+        assertEquals(SamplingGovernor.PERIOD_NORMAL_US, governor.getPeriodUs());
+
+        assertTrue(governor.update(0, 3.0f));
+        assertEquals(SamplingGovernor.PERIOD_FAST_US, governor.getPeriodUs());
+
+        // Krótkie zwolnienie (odbicie) nie zmienia okresu
+        assertFalse(governor.update(10 * MS, 0.5f));
+        assertFalse(governor.update(20 * MS, 3.0f));
+        assertFalse(governor.update(30 * MS, 0.0f));
+        assertFalse(governor.update(900 * MS, 0.0f));
+        assertEquals(SamplingGovernor.PERIOD_FAST_US, governor.getPeriodUs());
+
+        assertTrue(governor.update(1030 * MS, 0.0f));
+        assertEquals(SamplingGovernor.PERIOD_REST_US, governor.getPeriodUs());
+
+        assertTrue(governor.update(1040 * MS, 1.0f));
+        assertEquals(SamplingGovernor.PERIOD_NORMAL_US, governor.getPeriodUs());
+    }
+}
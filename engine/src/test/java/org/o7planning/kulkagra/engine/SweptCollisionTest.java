@@ -0,0 +1,57 @@
+package org.o7planning.kulkagra.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Swept circle against a rectangle, including moves which jump over it.
+ */
+public class SweptCollisionTest {
+
+    private static final float DELTA = 1e-4f;
+
+    @Test
+    public void fastMove_hitsThinBloc() {
+        // Ruch dłuższy niż blok, test dyskretny by go przeskoczył
+        float t = SweptCollision.timeOfImpact(0, 5, 100, 0, 2, 40, 0, 42, 10);
+        assertEquals(0.38f, t, DELTA);
+    }
+
+    @Test
+    public void overlapAtStart_isImmediate() {
+        assertEquals(0.0f, SweptCollision.timeOfImpact(39, 5, 10, 0, 2, 40, 0, 42, 10), DELTA);
+    }
+
+    @Test
+    public void passingNextToCorner_misses() {
+        // Środek mija narożnik (40, 0) w odległości większej niż promień
+        float t = SweptCollision.timeOfImpact(0, -3, 100, 0, 2, 40, 0, 42, 10);
+        assertEquals(SweptCollision.NO_IMPACT, t, 0.0f);
+    }
+
+    @Test
+    public void diagonalMove_hitsCorner() {
+        // Ruch po przekątnej w stronę narożnika (40, 0)
+        float t = SweptCollision.timeOfImpact(30, -10, 10, 10, 2, 40, 0, 42, 10);
+        float travelled = (float) Math.sqrt(200) * t;
+        assertEquals(Math.sqrt(200) - 2, travelled, 1e-3f);
+    }
+
+    @Test
+    public void touchingEdge_isNotImpact() {
+        assertEquals(SweptCollision.NO_IMPACT, SweptCollision.timeOfImpact(38, 5, 0, 0, 2, 40, 0, 42, 10), 0.0f);
+    }
+
+    @Test
+    public void blocCount_skipsEmptyCells() {
+        BlocStore store = new BlocStore(4);
+        store.add(BlocStore.TYPE_HOLE, 2, 0, 10);
+        store.add(BlocStore.TYPE_END, 3, 1, 10);
+        LevelGrid grid = new LevelGrid(store, 10);
+
+        // Ruch przez 4 x 2 komórki, tylko dwie mają blok
+        assertEquals(2, SweptCollision.blocCount(grid, 5, 8, 30, 0, 4));
+        assertEquals(0, SweptCollision.blocCount(grid, 5, 8, 0, 0, 4));
+    }
+}
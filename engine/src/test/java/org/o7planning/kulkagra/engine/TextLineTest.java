@@ -0,0 +1,39 @@
+package org.o7planning.kulkagra.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Numbers written into the preallocated text line of the overlay.
+ */
+public class TextLineTest {
+
+    @Test
+    public void numbers_areWrittenLikeStrings() {
+        TextLine line = new TextLine(64);
+        line.append("FPS ").appendTenths(59.96f).append(" steps ").append(-1204L).append(' ').append(0L);
+        assertEquals("FPS 60.0 steps -1204 0", line.toString());
+
+        line.clear().appendTenths(3.25f);
+        assertEquals("3.3", line.toString());
+    }
+
+    @Test
+    public void longText_isCut() {
+        TextLine line = new TextLine(4);
+        line.append("alloc ").append(12345L);
+        assertEquals("allo", line.toString());
+    }
+
+    @Test
+    public void cutNumber_keepsLeadingDigits() {
+        TextLine line = new TextLine(8);
+        line.append("n ").append(12345678L);
+        assertEquals("n 123456", line.toString());
+
+        line = new TextLine(24);
+        line.append(Long.MIN_VALUE);
+        assertEquals(String.valueOf(Long.MIN_VALUE), line.toString());
+    }
+}
@@ -0,0 +1,44 @@
+package org.o7planning.kulkagra.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tilt input stage: calibration and one euro filtering of noisy samples.
+ */
+public class TiltInputTest {
+
+    private static final long STEP = 20000000L;
+
+    @Test
+    public void calibration_makesCurrentTiltNeutral() {
+        TiltInput input = new TiltInput(null);
+        input.calibrate();
+        input.process(0, 2.0f, -1.0f);
+        assertEquals(0.0f, input.getX(), 0.0f);
+        assertEquals(0.0f, input.getY(), 0.0f);
+
+        input.process(STEP, 3.0f, -1.0f);
+        assertEquals(1.0f, input.getX(), 1e-6f);
+    }
+
+    @Test
+    public void oneEuro_reducesJitterOfStillDevice() {
+        TiltInput input = new TiltInput(new OneEuroFilter(1.5f, 0.2f, 1.0f));
+        Random random = new Random(3);
+        double raw = 0;
+        double filtered = 0;
+        for(int i = 0; i < 500; i++) {
+            float noise = (float) random.nextGaussian() * 0.2f;
+            input.process(i * STEP, 1.0f + noise, 0);
+            if(i >= 100) {
+                raw += noise * noise;
+                filtered += (input.getX() - 1.0f) * (input.getX() - 1.0f);
+            }
+        }
+        assertTrue("filtered " + filtered + " raw " + raw, filtered < raw / 4);
+    }
+}